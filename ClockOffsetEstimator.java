@@ -0,0 +1,45 @@
+/**
+ * Offset de relógio no estilo NTP/Cristian: offset = remoto - (envio + RTT/2),
+ * compartilhado por servidores e relays:
+ * - Das últimas amostras vale a de menor RTT (filtro de relógio do NTP), pois
+ *   é a que sofreu menos atraso assimétrico em filas
+ * - As mesmas amostras alimentam o RTT (srtt e RTO) da ligação
+ */
+class ClockOffsetEstimator {
+    static final int WINDOW = 8;
+
+    private final RttEstimator rtt = new RttEstimator();
+    private final double[] sampleRtt = new double[WINDOW];
+    private final long[] sampleOffset = new long[WINDOW];
+    private int count = 0;
+    private int next = 0;
+
+    synchronized void sample(double rttMillis, long sentAtMillis, long remoteMillis) {
+        rtt.sample(rttMillis);
+        sampleRtt[next] = rttMillis;
+        sampleOffset[next] = remoteMillis - (sentAtMillis + Math.round(rttMillis / 2));
+        next = (next + 1) % WINDOW;
+        count = Math.min(WINDOW, count + 1);
+    }
+
+    synchronized boolean ready() {
+        return count > 0;
+    }
+
+    // Relógio remoto menos o local, em ms.
+    synchronized long offset() {
+        int best = 0;
+        for (int i = 1; i < count; i++) {
+            if (sampleRtt[i] < sampleRtt[best]) best = i;
+        }
+        return count == 0 ? 0 : sampleOffset[best];
+    }
+
+    double srtt() {
+        return rtt.srtt();
+    }
+
+    long rto() {
+        return rtt.rto();
+    }
+}
@@ -3,18 +3,41 @@ import java.net.*;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Cliente Inteligente para o Sistema de Quiz Distribuído
  * - Descoberta automática de servidores via Multicast
  * - Reconexão automática em caso de falha
  * - Mantém estado do jogador (nome e pontuação)
+ * - Conecta-se a qualquer servidor do cluster, escolhendo o menos ocupado entre dois sorteados
+ * - Opcionalmente conecta-se por um relay (-Dquiz.relay=host:porta)
+ * - Conexão reserva (warm standby) com o provável próximo coordenador
+ * - Retomada de sessão por token (RESUME) ao reconectar
+ * - Lê o placar atual (GET_SCOREBOARD) ao entrar ou retomar a sessão
+ * - Backoff exponencial com jitter nas reconexões (evita avalanche no coordenador)
+ * - Recebe QUESTION/SCOREBOARD pelo canal multicast da sala (confiável por NACK)
+ * - Guarda a próxima questão cifrada (PREFETCH) e a exibe ao receber a chave (REVEAL)
+ * - Responde CLOCK_PING e marca cada resposta com o instante local do clique
  */
 public class DistributedQuizClient extends JFrame {
     // Multicast Configuration
     private static final String MULTICAST_ADDRESS = "230.0.0.1";
     private static final int MULTICAST_PORT = 4446;
+    private static final byte HEARTBEAT_MAGIC = (byte) 0xB1; // heartbeat binário dos servidores
+    private static final byte HEARTBEAT_VERSION = 3;
+    private static final int HEARTBEAT_SIZE = 57;
     
     private Socket tcpSocket;
     private BufferedReader tcpIn;
@@ -27,6 +50,30 @@ public class DistributedQuizClient extends JFrame {
     private boolean connected = false;
     private volatile boolean running = true;
     private int currentServerId = -1;
+    private volatile int lostServerId = -1; // servidor da conexão que acabou de cair
+    private volatile int redirectHops = 0;  // REDIRECTs seguidos neste JOIN (o servidor limita)
+    private volatile String sessionToken = null; // emitido pelo servidor no JOINED
+    
+    // Placar lido do servidor ao entrar/retomar (só é servido com lease válido)
+    private static final int SCOREBOARD_RETRY_DELAY = 500;
+    private static final int SCOREBOARD_MAX_RETRIES = 5;
+    private int scoreboardRetries = 0;
+    
+    // Backoff exponencial com jitter completo para reconexões
+    private static final int RECONNECT_BASE_DELAY = 250;
+    private static final int RECONNECT_MAX_DELAY = 8000;
+    private int reconnectAttempt = 0;
+    private boolean reconnectScheduled = false;
+    
+    // Canal multicast da sala (anunciado pelo servidor em ROOM_CHANNEL)
+    private MulticastSocket roomSocket;
+    private DatagramSocket repairSocket; // porta própria: NACKs saem e RM_LOST chega por ela
+    private InetAddress roomGroup;
+    private volatile int roomServerId = -1;
+    private volatile ReliableMulticastReceiver roomReceiver;
+    
+    // Questão pré-enviada cifrada: {índice, iv, conteúdo}
+    private volatile String[] sealedQuestion = null;
     
     // Multicast discovery
     private MulticastSocket multicastSocket;
@@ -35,6 +82,21 @@ public class DistributedQuizClient extends JFrame {
     private volatile String coordinatorIP = null;
     private volatile int coordinatorPort = -1;
     
+    // Relay opcional (host:porta): todas as conexões passam por ele, que retoma a
+    // sessão acima por conta própria quando troca de servidor
+    private static final String RELAY_ADDRESS = System.getProperty("quiz.relay");
+    
+    // Servidores conhecidos pelos heartbeats e conexão reserva (warm standby)
+    private static final int SERVER_EXPIRY = 3000;
+    private static final int STANDBY_HANDSHAKE_TIMEOUT = 2000;
+    private final Map<Integer, KnownServer> knownServers = new ConcurrentHashMap<>();
+    private final Object standbyLock = new Object();
+    private Socket standbySocket;
+    private BufferedReader standbyIn;
+    private PrintWriter standbyOut;
+    private int standbyServerId = -1;
+    private boolean standbyConnecting = false;
+    
     // GUI Components
     private JLabel statusLabel;
     private JLabel connectionLabel;
@@ -161,7 +223,7 @@ public class DistributedQuizClient extends JFrame {
         
         // Botão conectar
         connectButton = new JButton("Conectar ao Coordenador");
-        connectButton.setEnabled(false);
+        connectButton.setEnabled(RELAY_ADDRESS != null);
         connectButton.setBackground(new Color(66, 165, 245));
         connectButton.setForeground(Color.WHITE);
         connectButton.setFont(new Font("SansSerif", Font.BOLD, 15));
@@ -363,11 +425,19 @@ public class DistributedQuizClient extends JFrame {
                 log("Escutando grupo Multicast: " + MULTICAST_ADDRESS);
                 
                 byte[] buffer = new byte[1024];
+                ByteBuffer view = ByteBuffer.wrap(buffer);
+                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
                 while (running) {
-                    DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                    packet.setLength(buffer.length);
                     multicastSocket.receive(packet);
                     
-                    String message = new String(packet.getData(), 0, packet.getLength());
+                    if (packet.getLength() >= HEARTBEAT_SIZE && buffer[0] == HEARTBEAT_MAGIC) {
+                        view.clear();
+                        view.limit(packet.getLength());
+                        processHeartbeat(view, packet.getAddress());
+                        continue;
+                    }
+                    String message = new String(buffer, 0, packet.getLength());
                     processMulticastMessage(message, packet.getAddress());
                 }
             } catch (IOException e) {
@@ -378,20 +448,50 @@ public class DistributedQuizClient extends JFrame {
         }, "MulticastListener").start();
     }
     
-    private void processMulticastMessage(String message, InetAddress from) {
-        String[] parts = message.split("\\|");
+    // Heartbeat binário: id(4) portaCliente(2) portaServidor(2) flags(1) relógio(8) termo(8)
+    // jogadores(2) capacidade(4) carga(8) últimoSeqControle(8) últimoSeqSala(8).
+    private void processHeartbeat(ByteBuffer in, InetAddress from) {
+        in.get(); // magic
+        if (in.get() != HEARTBEAT_VERSION) return;
+        int serverId = in.getInt();
+        int clientPort = in.getShort() & 0xFFFF;
+        int serverPort = in.getShort() & 0xFFFF; // também a porta de reparo (NACK)
+        boolean isCoord = (in.get() & 0x01) != 0;
+        in.getLong(); // relógio
+        in.getLong(); // termo
+        int players = in.getShort();
+        int capacity = in.getInt();
+        in.getInt(); // fila de saída
+        int cpuLoad = in.getShort();
+        in.getShort(); // salas
+        in.getLong(); // seq do fluxo de controle
+        long roomSeq = in.getLong();
+        
+        // Atualização no lugar: só um servidor novo (ou que mudou de endereço) aloca
+        KnownServer known = knownServers.get(serverId);
+        if (known == null || known.port != clientPort || known.repairAddress.getPort() != serverPort
+                || !known.address.equals(from)) {
+            known = new KnownServer(from, clientPort, serverPort);
+            knownServers.put(serverId, known);
+        }
+        known.update(players, capacity, cpuLoad);
+        
+        // Perda do último quadro da sala só aparece comparando com o seq anunciado
+        ReliableMulticastReceiver receiver = roomReceiver;
+        if (serverId == roomServerId && receiver != null) {
+            receiver.observeLatest(roomSeq);
+            sendRoomNackIfDue(receiver, known.repairAddress);
+        }
         
-        if (parts[0].equals("HEARTBEAT")) {
-            int serverId = Integer.parseInt(parts[1]);
-            int clientPort = Integer.parseInt(parts[2]);
-            boolean isCoord = Boolean.parseBoolean(parts[4]);
+        if (isCoord) {
+            boolean coordinatorChanged = (coordinatorId != serverId);
+            boolean addressChanged = !known.ip.equals(coordinatorIP) || coordinatorPort != clientPort;
+            coordinatorId = serverId;
+            coordinatorIP = known.ip;
+            coordinatorPort = clientPort;
             
-            if (isCoord) {
-                boolean coordinatorChanged = (coordinatorId != serverId);
-                coordinatorId = serverId;
-                coordinatorIP = from.getHostAddress();
-                coordinatorPort = clientPort;
-                
+            // O rótulo só muda com o coordenador; conectado, o heartbeat não toca a GUI
+            if (coordinatorChanged || addressChanged || !connected) {
                 SwingUtilities.invokeLater(() -> {
                     statusLabel.setText("Coordenador encontrado!");
                     statusLabel.setForeground(new Color(76, 175, 80));
@@ -402,27 +502,40 @@ public class DistributedQuizClient extends JFrame {
                         connectButton.setEnabled(true);
                     }
                 });
-                
-                // Se estávamos conectados mas perdemos a conexão, reconectar
-                if (!connected && playerName != null && !playerName.isEmpty()) {
-                    log("Reconectando ao coordenador #" + coordinatorId + "...");
-                    reconnect();
-                }
-                // Se coordenador mudou e estamos conectados, reconectar ao novo
-                else if (connected && coordinatorChanged && currentServerId != coordinatorId) {
-                    log("Coordenador mudou de #" + currentServerId + " para #" + coordinatorId);
-                    SwingUtilities.invokeLater(() -> {
-                        statusLabel.setText("Mudança de coordenador detectada. Reconectando...");
-                        statusLabel.setForeground(new Color(255, 152, 0));
-                    });
-                    // Fechar conexão atual e reconectar
-                    closeCurrentConnection();
-                    reconnect();
-                }
             }
-        } else if (parts[0].equals("COORDINATOR_ANNOUNCE")) {
+            
+            if (coordinatorChanged && connected) {
+                // Qualquer servidor atende jogadores: a conexão atual continua valendo
+                log("Coordenador agora é #" + coordinatorId + " (conectado ao #" + currentServerId + ")");
+            }
+            
+            // Se estávamos conectados mas perdemos a conexão, reconectar
+            if (!connected && playerName != null && !playerName.isEmpty() && !promoteStandby(standbyServerId)) {
+                scheduleReconnect();
+            }
+        }
+        
+        if (connected) {
+            refreshStandby();
+        }
+    }
+    
+    private void processMulticastMessage(String message, InetAddress from) {
+        // Fluxo de controle confiável dos servidores: os heartbeats já cobrem as perdas
+        // aqui, então o cliente só desembrulha (sem NACK)
+        if (message.startsWith("RM|")) {
+            processMulticastMessage(message.split("\\|", 6)[5], from);
+            return;
+        }
+        String[] parts = message.split("\\|");
+        
+        if (parts[0].equals("COORDINATOR_ANNOUNCE")) {
             int newCoordId = Integer.parseInt(parts[1]);
             
+            if (!connected && promoteStandby(standbyServerId)) {
+                return;
+            }
+            
             // Coordenador anunciado, aguardar heartbeat para obter detalhes
             if (coordinatorId != newCoordId) {
                 log("Novo coordenador anunciado: #" + newCoordId);
@@ -431,6 +544,129 @@ public class DistributedQuizClient extends JFrame {
         }
     }
     
+    // ==================== CANAL MULTICAST DA SALA ====================
+    
+    private synchronized void joinRoomChannel(int serverId, String group, int port, long seq) {
+        try {
+            InetAddress newGroup = InetAddress.getByName(group);
+            NetworkInterface netIf = NetworkInterface.getByInetAddress(InetAddress.getLocalHost());
+            if (netIf == null) {
+                netIf = NetworkInterface.getNetworkInterfaces().nextElement();
+            }
+            
+            if (roomSocket == null) {
+                roomSocket = new MulticastSocket(port);
+                startRoomListener(roomSocket);
+            }
+            if (repairSocket == null) {
+                repairSocket = new DatagramSocket();
+                startRepairListener(repairSocket);
+            }
+            if (roomGroup != null && !roomGroup.equals(newGroup)) {
+                roomSocket.leaveGroup(new InetSocketAddress(roomGroup, port), netIf);
+            }
+            if (!newGroup.equals(roomGroup)) {
+                roomSocket.joinGroup(new InetSocketAddress(newGroup, port), netIf);
+            }
+            roomGroup = newGroup;
+            ReliableMulticastReceiver receiver = new ReliableMulticastReceiver();
+            receiver.observeLatest(seq);
+            roomReceiver = receiver;
+            roomServerId = serverId;
+            log("Canal da sala: " + group + ":" + port + " (servidor #" + serverId + ")");
+        } catch (IOException e) {
+            log("Canal multicast da sala indisponível, mantendo TCP: " + e.getMessage());
+        }
+    }
+    
+    private void startRoomListener(MulticastSocket socket) {
+        new Thread(() -> {
+            byte[] buffer = new byte[8192];
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            while (running) {
+                try {
+                    packet.setLength(buffer.length);
+                    socket.receive(packet);
+                    
+                    // RM|servidor|fluxo|época|seq|quadro
+                    String[] parts = new String(buffer, 0, packet.getLength(),
+                        StandardCharsets.UTF_8).split("\\|", 6);
+                    ReliableMulticastReceiver receiver = roomReceiver;
+                    if (!parts[0].equals("RM") || receiver == null 
+                            || Integer.parseInt(parts[1]) != roomServerId) continue;
+                    
+                    if (!receiver.matchesEpoch(Long.parseLong(parts[3]))) {
+                        // Servidor reiniciado: recomeçar a numeração
+                        receiver = new ReliableMulticastReceiver();
+                        receiver.matchesEpoch(Long.parseLong(parts[3]));
+                        roomReceiver = receiver;
+                    }
+                    for (String frame : receiver.receive(Long.parseLong(parts[4]), parts[5])) {
+                        processTCPMessage(frame);
+                    }
+                    long repairMillis = receiver.takeRepairMillis();
+                    if (repairMillis >= 0) {
+                        log("Canal da sala: lacuna reparada em " + repairMillis + " ms (" +
+                            receiver.lostCount() + " quadros perdidos no total)");
+                    }
+                    KnownServer server = knownServers.get(roomServerId);
+                    if (server != null) {
+                        sendRoomNackIfDue(receiver, server.repairAddress);
+                    }
+                } catch (IOException e) {
+                    if (running) {
+                        log("Erro no canal da sala: " + e.getMessage());
+                    }
+                    return;
+                }
+            }
+        }, "RoomListener").start();
+    }
+    
+    // RM_LOST|servidor|fluxo|até: resposta unicast do servidor a um NACK nosso.
+    private void startRepairListener(DatagramSocket socket) {
+        new Thread(() -> {
+            byte[] buffer = new byte[512];
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            while (running) {
+                try {
+                    packet.setLength(buffer.length);
+                    socket.receive(packet);
+                    String[] parts = new String(buffer, 0, packet.getLength(),
+                        StandardCharsets.UTF_8).split("\\|");
+                    ReliableMulticastReceiver receiver = roomReceiver;
+                    if (!parts[0].equals("RM_LOST") || receiver == null 
+                            || Integer.parseInt(parts[1]) != roomServerId) continue;
+                    
+                    // Quadros fora do buffer do servidor: o estado atual vem por TCP
+                    log("Canal da sala: quadros irrecuperáveis até #" + parts[3] + ", pedindo reparo");
+                    List<String> delivered = receiver.skipTo(Long.parseLong(parts[3]));
+                    delivered.forEach(this::processTCPMessage);
+                    if (tcpOut != null) tcpOut.println("REPAIR");
+                } catch (IOException e) {
+                    if (running) {
+                        log("Erro na porta de reparo: " + e.getMessage());
+                    }
+                    return;
+                }
+            }
+        }, "RepairListener").start();
+    }
+    
+    private void sendRoomNackIfDue(ReliableMulticastReceiver receiver, InetSocketAddress server) {
+        DatagramSocket socket = repairSocket;
+        if (socket == null) return;
+        long[] missing = receiver.nackDue(System.currentTimeMillis());
+        if (missing == null) return;
+        byte[] data = ("RM_NACK|" + roomServerId + "|R|" + missing[0] + "|" + missing[1])
+            .getBytes(StandardCharsets.UTF_8);
+        try {
+            socket.send(new DatagramPacket(data, data.length, server));
+        } catch (IOException e) {
+            log("Erro enviando NACK: " + e.getMessage());
+        }
+    }
+    
     // ==================== CONNECTION MANAGEMENT ====================
     
     private void connectToCoordinator() {
@@ -441,7 +677,7 @@ public class DistributedQuizClient extends JFrame {
             return;
         }
         
-        if (coordinatorIP == null || coordinatorPort == -1) {
+        if (RELAY_ADDRESS == null && (coordinatorIP == null || coordinatorPort == -1)) {
             JOptionPane.showMessageDialog(this, "Nenhum coordenador disponível!");
             return;
         }
@@ -449,7 +685,37 @@ public class DistributedQuizClient extends JFrame {
         connectButton.setEnabled(false);
         playerNameField.setEnabled(false);
         
-        connectToServer(coordinatorIP, coordinatorPort);
+        connectToAnyServer();
+    }
+    
+    // Qualquer servidor atende jogadores: sorteia dois com heartbeat recente e abaixo
+    // da capacidade e fica com o menos ocupado (evita o servidor que acabou de cair)
+    private void connectToAnyServer() {
+        if (RELAY_ADDRESS != null) {
+            int colon = RELAY_ADDRESS.lastIndexOf(':');
+            connectToServer(RELAY_ADDRESS.substring(0, colon), Integer.parseInt(RELAY_ADDRESS.substring(colon + 1)));
+            return;
+        }
+        
+        long now = System.currentTimeMillis();
+        List<KnownServer> candidates = new ArrayList<>();
+        for (Map.Entry<Integer, KnownServer> entry : knownServers.entrySet()) {
+            KnownServer server = entry.getValue();
+            if (entry.getKey() != lostServerId && now - server.lastSeen <= SERVER_EXPIRY &&
+                server.players < server.capacity) {
+                candidates.add(server);
+            }
+        }
+        
+        if (!candidates.isEmpty()) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            KnownServer first = candidates.get(random.nextInt(candidates.size()));
+            KnownServer second = candidates.get(random.nextInt(candidates.size()));
+            KnownServer target = second.lessLoadedThan(first) ? second : first;
+            connectToServer(target.ip, target.port);
+        } else if (coordinatorIP != null && coordinatorPort != -1) {
+            connectToServer(coordinatorIP, coordinatorPort);
+        }
     }
     
     private void connectToServer(String ip, int port) {
@@ -461,8 +727,8 @@ public class DistributedQuizClient extends JFrame {
                 tcpIn = new BufferedReader(new InputStreamReader(tcpSocket.getInputStream()));
                 tcpOut = new PrintWriter(tcpSocket.getOutputStream(), true);
                 
-                // Enviar nome do jogador
-                tcpOut.println("JOIN|" + playerName);
+                // Retomar sessão (ou enviar nome do jogador)
+                sendHello(tcpOut);
                 
                 SwingUtilities.invokeLater(() -> {
                     connected = true;
@@ -480,27 +746,56 @@ public class DistributedQuizClient extends JFrame {
                     statusLabel.setForeground(Color.RED);
                     connected = false;
                     
-                    // Tentar reconectar após 3 segundos
-                    new Timer(3000, evt -> {
-                        ((Timer)evt.getSource()).stop();
-                        if (!connected && coordinatorIP != null) {
-                            reconnect();
-                        }
-                    }).start();
+                    // Tentar reconectar com backoff
+                    scheduleReconnect();
                 });
             }
         }).start();
     }
     
+    // Agenda uma reconexão após um atraso aleatório em [0, min(máx, base * 2^tentativa)].
+    // Todos os clientes reagem ao mesmo heartbeat; o jitter espalha a onda no tempo.
+    private void scheduleReconnect() {
+        long delay;
+        synchronized (this) {
+            if (reconnectScheduled) return;
+            reconnectScheduled = true;
+            long ceiling = Math.min(RECONNECT_MAX_DELAY, (long) RECONNECT_BASE_DELAY << Math.min(reconnectAttempt, 10));
+            delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+            reconnectAttempt++;
+        }
+        log("Reconexão em " + delay + " ms (tentativa " + reconnectAttempt + ")");
+        
+        Timer timer = new Timer((int) delay, evt -> {
+            synchronized (this) {
+                reconnectScheduled = false;
+            }
+            if (!connected && (coordinatorIP != null || RELAY_ADDRESS != null)) {
+                reconnect();
+            }
+        });
+        timer.setRepeats(false);
+        timer.start();
+    }
+    
+    private synchronized void resetReconnectBackoff() {
+        reconnectAttempt = 0;
+        lostServerId = -1;
+        redirectHops = 0;
+    }
+    
     private void reconnect() {
         SwingUtilities.invokeLater(() -> {
-            statusLabel.setText("Reconectando ao servidor #" + coordinatorId + "...");
+            statusLabel.setText("Reconectando...");
             statusLabel.setForeground(Color.YELLOW);
         });
         
-        if (coordinatorIP != null && coordinatorPort != -1) {
-            connectToServer(coordinatorIP, coordinatorPort);
-        }
+        connectToAnyServer();
+    }
+    
+    private void sendHello(PrintWriter out) {
+        String token = sessionToken;
+        out.println(token != null ? "RESUME|" + token : "JOIN|" + playerName + "|" + redirectHops);
     }
     
     private void closeCurrentConnection() {
@@ -515,48 +810,255 @@ public class DistributedQuizClient extends JFrame {
     }
     
     private void startTCPListener() {
+        final BufferedReader reader = tcpIn;
         new Thread(() -> {
             try {
                 String inputLine;
-                while ((inputLine = tcpIn.readLine()) != null) {
+                while ((inputLine = reader.readLine()) != null) {
                     processTCPMessage(inputLine);
                 }
             } catch (IOException e) {
+                // Conexão substituída (ex.: promoção da reserva): nada a fazer
+                if (reader != tcpIn) return;
                 if (connected) {
                     log("Conexão perdida com o servidor #" + currentServerId);
                     connected = false;
+                    lostServerId = currentServerId;
+                    
+                    // Qualquer servidor atende jogadores: a reserva assume na hora
+                    if (promoteStandby(standbyServerId)) return;
                     
                     SwingUtilities.invokeLater(() -> {
-                        statusLabel.setText("Conexão perdida. Procurando novo coordenador...");
+                        statusLabel.setText("Conexão perdida. Procurando outro servidor...");
                         statusLabel.setForeground(Color.RED);
                     });
                     
-                    // Aguardar 1 segundo e tentar reconectar
-                    try {
-                        Thread.sleep(1000);
-                    } catch (InterruptedException ie) {
-                        // Ignore
-                    }
-                    
-                    if (!connected && coordinatorIP != null && coordinatorPort != -1) {
-                        log("Tentando reconectar automaticamente...");
-                        reconnect();
-                    }
+                    log("Tentando reconectar automaticamente...");
+                    scheduleReconnect();
                 }
             }
         }, "TCPListener").start();
     }
     
+    // ==================== WARM STANDBY ====================
+    
+    // Conexão reserva com o servidor de maior ID (o próximo coordenador), autenticada
+    // pelo token de sessão no STANDBY; fica ociosa até ser promovida
+    private void refreshStandby() {
+        String token = sessionToken;
+        if (playerName == null || playerName.isEmpty() || token == null || RELAY_ADDRESS != null) return;
+        
+        long now = System.currentTimeMillis();
+        knownServers.values().removeIf(server -> now - server.lastSeen > SERVER_EXPIRY);
+        
+        int candidate = -1;
+        for (Integer id : knownServers.keySet()) {
+            if (id != currentServerId && id > candidate) candidate = id;
+        }
+        
+        synchronized (standbyLock) {
+            if (standbyConnecting || candidate == standbyServerId) return;
+            closeStandby();
+            if (candidate == -1) return;
+            standbyConnecting = true;
+        }
+        
+        KnownServer target = knownServers.get(candidate);
+        final int targetId = candidate;
+        new Thread(() -> {
+            Socket socket = null;
+            try {
+                socket = new Socket(target.ip, target.port);
+                socket.setSoTimeout(STANDBY_HANDSHAKE_TIMEOUT);
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+                out.println("STANDBY|" + token);
+                
+                String reply = in.readLine();
+                if (reply == null || !reply.equals("STANDBY_OK|" + targetId)) {
+                    throw new IOException("handshake inválido: " + reply);
+                }
+                socket.setSoTimeout(0);
+                
+                synchronized (standbyLock) {
+                    standbySocket = socket;
+                    standbyIn = in;
+                    standbyOut = out;
+                    standbyServerId = targetId;
+                }
+                log("Conexão reserva pronta com o servidor #" + targetId);
+            } catch (IOException e) {
+                log("Falha na conexão reserva com #" + targetId + ": " + e.getMessage());
+                try {
+                    if (socket != null) socket.close();
+                } catch (IOException ignored) {
+                    // Ignore
+                }
+            } finally {
+                synchronized (standbyLock) {
+                    standbyConnecting = false;
+                }
+            }
+        }, "StandbyConnector").start();
+    }
+    
+    // Troca para a conexão reserva se ela for com targetId.
+    private boolean promoteStandby(int targetId) {
+        if (playerName == null || playerName.isEmpty() || targetId == -1) return false;
+        
+        synchronized (standbyLock) {
+            if (standbySocket == null || standbyServerId != targetId || standbySocket.isClosed()) {
+                return false;
+            }
+            
+            log("Promovendo conexão reserva: servidor #" + targetId);
+            Socket oldSocket = tcpSocket;
+            tcpSocket = standbySocket;
+            tcpIn = standbyIn;
+            tcpOut = standbyOut;
+            standbySocket = null;
+            standbyIn = null;
+            standbyOut = null;
+            standbyServerId = -1;
+            
+            try {
+                if (oldSocket != null && !oldSocket.isClosed()) oldSocket.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+            
+            sendHello(tcpOut);
+            if (tcpOut.checkError()) {
+                log("Conexão reserva com #" + targetId + " estava fechada");
+                connected = false;
+                return false;
+            }
+            connected = true;
+            startTCPListener();
+        }
+        
+        SwingUtilities.invokeLater(() -> {
+            statusLabel.setText("Conectado!");
+            statusLabel.setForeground(new Color(76, 175, 80));
+        });
+        return true;
+    }
+    
+    private boolean hasStandby() {
+        synchronized (standbyLock) {
+            return standbySocket != null && !standbySocket.isClosed();
+        }
+    }
+    
+    private void closeStandby() {
+        synchronized (standbyLock) {
+            try {
+                if (standbySocket != null) standbySocket.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+            standbySocket = null;
+            standbyIn = null;
+            standbyOut = null;
+            standbyServerId = -1;
+        }
+    }
+    
     private void processTCPMessage(String message) {
         String[] parts = message.split("\\|");
         
+        // Ping de relógio: responder já, na thread do listener, para não inflar o RTT
+        if (parts[0].equals("CLOCK_PING")) {
+            PrintWriter out = tcpOut;
+            if (out != null) {
+                out.println("CLOCK_PONG|" + parts[1] + "|" + parts[2] + "|" + System.currentTimeMillis());
+            }
+            return;
+        }
+        
         log("Mensagem recebida: " + parts[0]);
+
+        // Servidor acima da marca d'água: indica um par com folga
+        if (parts[0].equals("REDIRECT")) {
+            int targetId = Integer.parseInt(parts[3]);
+            redirectHops++;
+            log("Redirecionado para o servidor #" + targetId);
+            SwingUtilities.invokeLater(() -> {
+                statusLabel.setText("Servidor cheio. Conectando ao #" + targetId + "...");
+                statusLabel.setForeground(new Color(255, 152, 0));
+            });
+            tcpIn = null; // o listener desta conexão encerra sem tratar como queda
+            closeCurrentConnection();
+            if (!promoteStandby(targetId)) {
+                connectToServer(parts[1], Integer.parseInt(parts[2]));
+            }
+            return;
+        }
         
+        // Próxima questão cifrada: guardar até a revelação
+        if (parts[0].equals("PREFETCH")) {
+            sealedQuestion = new String[]{parts[1], parts[2], parts[3]};
+            return;
+        }
+        
+        if (parts[0].equals("REVEAL")) {
+            String frame = openSealedQuestion(parts[1], parts[2]);
+            if (frame != null) {
+                processTCPMessage(frame);
+            } else if (tcpOut != null) {
+                // Pré-envio perdido (ex.: entrou depois dele): pedir a questão por TCP
+                tcpOut.println("REPAIR");
+            }
+            return;
+        }
+        
+        if (parts[0].equals("ROOM_CHANNEL")) {
+            joinRoomChannel(Integer.parseInt(parts[1]), parts[2], Integer.parseInt(parts[3]),
+                Long.parseLong(parts[4]));
+            return;
+        }
+        
+        // Servidor sem lease não serve o placar: tentar de novo em instantes
+        if (parts[0].equals("ERROR")) {
+            if (parts.length > 1 && parts[1].equals("SCOREBOARD_UNAVAILABLE")) {
+                SwingUtilities.invokeLater(this::retryScoreboardRequest);
+            }
+            return;
+        }
+        
+        // Token desconhecido pelo servidor: entrar pelo caminho normal
+        if (parts[0].equals("RESUME_FAILED")) {
+            log("Sessão não reconhecida. Enviando JOIN...");
+            sessionToken = null;
+            sendHello(tcpOut); // JOIN com a contagem de redirecionamentos
+            return;
+        }
+
         SwingUtilities.invokeLater(() -> {
             switch (parts[0]) {
+                case "RESUMED":
+                    currentServerId = Integer.parseInt(parts[2]);
+                    currentScore = Integer.parseInt(parts[3]);
+                    log("Sessão retomada no servidor #" + currentServerId);
+                    resetReconnectBackoff();
+                    
+                    showGamePanel();
+                    scoreLabel.setText("Pontuação: " + currentScore);
+                    statusLabel.setText("Conectado!");
+                    statusLabel.setForeground(new Color(76, 175, 80));
+                    if (connectionLabel != null) {
+                        connectionLabel.setText("#" + currentServerId);
+                    }
+                    requestScoreboard();
+                    break;
+                    
                 case "JOINED":
+                    if (parts.length > 3) {
+                        sessionToken = parts[3];
+                    }
                     currentServerId = Integer.parseInt(parts[2]);
                     log("Conectado ao servidor #" + currentServerId);
+                    resetReconnectBackoff();
                     
                     showGamePanel();
                     questionLabel.setText("<html><div style='text-align: center; padding: 20px;'>" +
@@ -567,6 +1069,7 @@ public class DistributedQuizClient extends JFrame {
                     if (connectionLabel != null) {
                         connectionLabel.setText("#" + currentServerId);
                     }
+                    requestScoreboard();
                     break;
                 
                 case "QUESTION":
@@ -597,6 +1100,22 @@ public class DistributedQuizClient extends JFrame {
         });
     }
     
+    private String openSealedQuestion(String index, String key) {
+        String[] sealed = sealedQuestion;
+        if (sealed == null || !sealed[0].equals(index)) return null;
+        sealedQuestion = null;
+        try {
+            Base64.Decoder decoder = Base64.getDecoder();
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(decoder.decode(key), "AES"),
+                new GCMParameterSpec(128, decoder.decode(sealed[1])));
+            return new String(cipher.doFinal(decoder.decode(sealed[2])), StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            log("Falha ao abrir questão pré-enviada: " + e.getMessage());
+            return null;
+        }
+    }
+    
     private void displayQuestion() {
         questionLabel.setText("<html><div style='text-align: center; padding: 20px;'>" +
             currentQuestion + "</div></html>");
@@ -625,7 +1144,8 @@ public class DistributedQuizClient extends JFrame {
         
         // Enviar resposta via TCP
         if (tcpOut != null) {
-            tcpOut.println("ANSWER|" + answerIndex);
+            // Instante local do clique; o servidor corrige pelo offset estimado
+            tcpOut.println("ANSWER|" + answerIndex + "|" + System.currentTimeMillis());
         }
         
         questionLabel.setText("<html><div style='text-align: center; padding: 20px;'>" +
@@ -633,6 +1153,31 @@ public class DistributedQuizClient extends JFrame {
             "Aguardando outras respostas...</div></html>");
     }
     
+    // Pede o placar atual (entrada ou retomada no meio do jogo). Chamado na EDT.
+    private void requestScoreboard() {
+        scoreboardRetries = 0;
+        PrintWriter out = tcpOut;
+        if (out != null) {
+            out.println("GET_SCOREBOARD");
+        }
+    }
+    
+    private void retryScoreboardRequest() {
+        if (scoreboardRetries >= SCOREBOARD_MAX_RETRIES) {
+            log("Placar indisponível; aguardando a próxima publicação");
+            return;
+        }
+        scoreboardRetries++;
+        Timer timer = new Timer(SCOREBOARD_RETRY_DELAY * scoreboardRetries, evt -> {
+            PrintWriter out = tcpOut;
+            if (out != null && connected) {
+                out.println("GET_SCOREBOARD");
+            }
+        });
+        timer.setRepeats(false);
+        timer.start();
+    }
+    
     private void displayScoreboard(String[] parts) {
         StringBuilder sb = new StringBuilder();
        // sb.append("╔════════════════════════════╗\n");
@@ -696,9 +1241,46 @@ public class DistributedQuizClient extends JFrame {
                 multicastSocket.close();
             }
             if (tcpSocket != null) tcpSocket.close();
+            if (roomSocket != null) roomSocket.close();
+            if (repairSocket != null) repairSocket.close();
         } catch (IOException e) {
             // Ignore
         }
+        closeStandby();
+    }
+    
+    // ==================== CLASSES AUXILIARES ====================
+    
+    private static class KnownServer {
+        final InetAddress address;
+        final String ip;
+        final int port;
+        final InetSocketAddress repairAddress; // porta de reparo do servidor (socket SWIM)
+        volatile int players;  // carga informada no último heartbeat
+        volatile int capacity;
+        volatile int cpuLoad;  // milésimos por núcleo, -1 = desconhecido
+        volatile long lastSeen;
+        
+        KnownServer(InetAddress address, int port, int serverPort) {
+            this.address = address;
+            this.ip = address.getHostAddress();
+            this.port = port;
+            this.repairAddress = new InetSocketAddress(address, serverPort);
+        }
+        
+        void update(int players, int capacity, int cpuLoad) {
+            this.players = players;
+            this.capacity = capacity;
+            this.cpuLoad = cpuLoad;
+            this.lastSeen = System.currentTimeMillis();
+        }
+        
+        // Ocupação relativa à capacidade; empate decidido pela CPU.
+        boolean lessLoadedThan(KnownServer other) {
+            double mine = (double) players / capacity;
+            double theirs = (double) other.players / other.capacity;
+            return mine != theirs ? mine < theirs : cpuLoad < other.cpuLoad;
+        }
     }
     
     public static void main(String[] args) {
@@ -0,0 +1,452 @@
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Date;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Relay de distribuição para o Sistema de Quiz Distribuído
+ * - Conecta-se a um servidor (ou a outro relay) como um cliente e assina os quadros da sala
+ * - Retransmite cada quadro a todos os clientes e relays abaixo dele: relays formam uma árvore
+ *   e o servidor envia uma única cópia por relay, qualquer que seja o tamanho da audiência
+ * - Multiplexa os jogadores numa só conexão: RELAYED|conexão|msg para cima, TO|conexão|msg para baixo
+ * - Mede offset/RTT com cada conexão abaixo (CLOCK_PING) e traz o instante das respostas
+ *   para o próprio relógio, de modo que o servidor só precisa corrigir o último salto
+ * - Retoma as sessões dos jogadores (RESUME) ao trocar de servidor acima, sem derrubá-los
+ * - Fila de saída limitada por conexão: um cliente lento é desconectado, não atrasa os demais
+ * - Assinaturas (acima e abaixo) levam o segredo compartilhado -Dquiz.relay.secret
+ *
+ * Uso: java DistributedQuizRelay <portaLocal> <host:porta acima> [host:porta ...]
+ */
+public class DistributedQuizRelay {
+    private static final int CLOCK_PING_INTERVAL = Integer.getInteger("quiz.clock.interval", 2000);
+    private static final int STATS_EVERY = 15; // rodadas de CLOCK_PING entre relatórios
+    private static final int DOWNSTREAM_QUEUE = Integer.getInteger("quiz.relay.queue", 1024);
+    private static final int UPSTREAM_QUEUE = Integer.getInteger("quiz.relay.upQueue", 1024);
+    private static final int CONNECT_TIMEOUT = 2000;
+    private static final int RECONNECT_BASE_DELAY = 250;
+    private static final int RECONNECT_MAX_DELAY = 8000;
+    // Segredo apresentado acima e exigido dos relays abaixo (o mesmo em toda a árvore)
+    private static final String RELAY_SECRET = System.getProperty("quiz.relay.secret", "");
+
+    private final int listenPort;
+    private final List<InetSocketAddress> upstreams;
+    private final String relayName;
+    private volatile boolean running = true;
+
+    // Conexão acima (servidor ou outro relay). Sem ela, o que os jogadores enviam
+    // (JOIN, ANSWER, REPAIR...) espera numa fila limitada até a reconexão
+    private volatile PrintWriter upstreamOut;
+    private final Object upstreamLock = new Object();
+    private final ArrayDeque<String> pendingUp = new ArrayDeque<>(); // sob upstreamLock
+    private long pendingDropped = 0; // sob upstreamLock
+
+    // Conexões abaixo (clientes e relays) e tokens de sessão por caminho ("c7" ou "c3/c12")
+    private final Map<String, Downstream> downstream = new ConcurrentHashMap<>();
+    private final Map<String, String> sessionTokens = new ConcurrentHashMap<>();
+    private final AtomicLong nextConnId = new AtomicLong();
+
+    // Métricas
+    private final AtomicLong framesIn = new AtomicLong();
+    private final AtomicLong framesOut = new AtomicLong();
+    private final AtomicLong slowDropped = new AtomicLong();
+    private final Timer timer = new Timer("RelayTimer", true);
+    private int pingRounds = 0; // só a thread do timer
+
+    public DistributedQuizRelay(int listenPort, List<InetSocketAddress> upstreams) {
+        this.listenPort = listenPort;
+        this.upstreams = upstreams;
+        this.relayName = System.getProperty("quiz.relay.name", "relay-" + listenPort);
+    }
+
+    public void start() throws IOException {
+        ServerSocket serverSocket = new ServerSocket(listenPort);
+        log("Relay " + relayName + " escutando na porta " + listenPort + ", acima: " + upstreams);
+
+        new Thread(this::runUpstream, "Upstream").start();
+
+        timer.scheduleAtFixedRate(new TimerTask() {
+            @Override
+            public void run() {
+                pingDownstream();
+            }
+        }, CLOCK_PING_INTERVAL, CLOCK_PING_INTERVAL);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            running = false;
+            timer.cancel();
+            try {
+                serverSocket.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+        }));
+
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Downstream conn = new Downstream("c" + nextConnId.incrementAndGet(), socket);
+                downstream.put(conn.id, conn);
+                new Thread(conn, "Downstream-" + conn.id).start();
+            } catch (IOException e) {
+                if (running) {
+                    log("Erro aceitando conexão: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // ==================== CONEXÃO ACIMA ====================
+
+    // Mantém a assinatura com o primeiro servidor/relay disponível da lista. Ao
+    // reconectar, retoma cada sessão conhecida com RESUME em nome do jogador.
+    private void runUpstream() {
+        int attempt = 0;
+        int index = 0;
+        while (running) {
+            InetSocketAddress target = upstreams.get(index % upstreams.size());
+            try (Socket socket = new Socket()) {
+                socket.connect(target, CONNECT_TIMEOUT);
+                socket.setTcpNoDelay(true);
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+
+                // Sob o lock: nada de um jogador sobe antes do RESUME da sua sessão;
+                // depois, o que ficou na fila durante a queda, na ordem de chegada
+                int resumed = 0;
+                int flushed;
+                long dropped;
+                synchronized (upstreamLock) {
+                    out.println("RELAY_SUBSCRIBE|" + relayName + "|" + RELAY_SECRET);
+                    for (Map.Entry<String, String> session : sessionTokens.entrySet()) {
+                        out.println("RELAYED|" + session.getKey() + "|RESUME|" + session.getValue());
+                        resumed++;
+                    }
+                    flushed = pendingUp.size();
+                    while (!pendingUp.isEmpty()) {
+                        out.println(pendingUp.removeFirst());
+                    }
+                    dropped = pendingDropped;
+                    pendingDropped = 0;
+                    upstreamOut = out;
+                }
+                attempt = 0;
+                log("Conectado acima: " + target + " (" + resumed + " sessões retomadas, " + flushed +
+                    " mensagens da fila" + (dropped > 0 ? ", " + dropped + " descartadas" : "") + ")");
+
+                String line;
+                while ((line = in.readLine()) != null) {
+                    handleUpstream(line);
+                }
+                log("Conexão acima encerrada: " + target);
+            } catch (IOException e) {
+                log("Falha com " + target + ": " + e.getMessage());
+            }
+            synchronized (upstreamLock) {
+                upstreamOut = null;
+            }
+            index++;
+
+            // Backoff exponencial com jitter, como nos clientes
+            long ceiling = Math.min(RECONNECT_MAX_DELAY, (long) RECONNECT_BASE_DELAY << Math.min(attempt++, 10));
+            try {
+                Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void handleUpstream(String line) {
+        framesIn.incrementAndGet();
+        String[] parts = line.split("\\|", 3);
+        switch (parts[0]) {
+            case "TO":
+                route(parts[1], parts[2]);
+                break;
+
+            case "DROP":
+                drop(parts[1]);
+                break;
+
+            case "CLOCK_PING":
+                sendUp("CLOCK_PONG|" + parts[1] + "|" + parts[2] + "|" + System.currentTimeMillis());
+                break;
+
+            case "RELAY_OK":
+                log("Assinatura aceita por " + parts[1]);
+                break;
+
+            case "RELAY_DENIED":
+                log("Assinatura recusada acima: confira -Dquiz.relay.secret");
+                break;
+
+            default:
+                // Quadro da sala: uma cópia para cada conexão abaixo
+                fanOut(line);
+        }
+    }
+
+    private void sendUp(String message) {
+        synchronized (upstreamLock) {
+            PrintWriter out = upstreamOut;
+            if (out != null) {
+                out.println(message);
+                if (!out.checkError()) return;
+                upstreamOut = null; // conexão caiu: esta mensagem também vai para a fila
+            }
+            if (message.startsWith("CLOCK_PONG|")) return; // amostra vencida; o próximo ping refaz
+            if (pendingUp.size() >= UPSTREAM_QUEUE) {
+                pendingUp.removeFirst();
+                pendingDropped++;
+            }
+            pendingUp.addLast(message);
+        }
+    }
+
+    // Mensagem para um único jogador: o primeiro segmento do caminho é a conexão local.
+    private void route(String path, String message) {
+        if (message.startsWith("JOINED|")) {
+            sessionTokens.put(path, message.split("\\|")[3]);
+        } else if (message.equals("RESUME_FAILED")) {
+            sessionTokens.remove(path);
+        }
+
+        int slash = path.indexOf('/');
+        Downstream conn = downstream.get(slash < 0 ? path : path.substring(0, slash));
+        if (conn == null) return;
+        conn.send(slash < 0 ? message : "TO|" + path.substring(slash + 1) + "|" + message);
+    }
+
+    private void drop(String path) {
+        sessionTokens.remove(path);
+        int slash = path.indexOf('/');
+        Downstream conn = downstream.get(slash < 0 ? path : path.substring(0, slash));
+        if (conn == null) return;
+        if (slash < 0) {
+            conn.close(false); // o servidor já descartou o jogador
+        } else {
+            conn.nested.remove(path);
+            conn.send("DROP|" + path.substring(slash + 1));
+        }
+    }
+
+    private void fanOut(String line) {
+        byte[] frame = (line + "\n").getBytes();
+        for (Downstream conn : downstream.values()) {
+            conn.send(frame);
+        }
+        framesOut.addAndGet(downstream.size());
+    }
+
+    // ==================== CONEXÕES ABAIXO ====================
+
+    private void handleDownstream(Downstream conn, String line) {
+        String[] parts = line.split("\\|", 3);
+        switch (parts[0]) {
+            case "CLOCK_PONG":
+                String[] pong = line.split("\\|");
+                double rtt = (System.nanoTime() - Long.parseLong(pong[1])) / 1e6;
+                conn.clock.sample(rtt, Long.parseLong(pong[2]), Long.parseLong(pong[3]));
+                break;
+
+            case "RELAY_SUBSCRIBE":
+                String[] subscribe = line.split("\\|");
+                if (RELAY_SECRET.isEmpty() || !MessageDigest.isEqual(
+                        RELAY_SECRET.getBytes(StandardCharsets.UTF_8),
+                        (subscribe.length > 2 ? subscribe[2] : "").getBytes(StandardCharsets.UTF_8))) {
+                    log("Relay abaixo recusado: " + parts[1] + " (" + conn.id + ")");
+                    conn.close(false);
+                    break;
+                }
+                conn.isRelay = true;
+                conn.send("RELAY_OK|" + relayName);
+                log("Relay abaixo conectado: " + parts[1] + " (" + conn.id + ")");
+                break;
+
+            case "RELAYED":
+                if (!conn.isRelay) break;
+                String path = conn.id + "/" + parts[1];
+                conn.nested.add(path);
+                forwardUp(conn, path, parts[2]);
+                break;
+
+            case "RELAY_CLOSED":
+                if (!conn.isRelay) break;
+                String closed = conn.id + "/" + parts[1];
+                conn.nested.remove(closed);
+                sessionTokens.remove(closed);
+                sendUp("RELAY_CLOSED|" + closed);
+                break;
+
+            default:
+                forwardUp(conn, conn.id, line);
+        }
+    }
+
+    private void forwardUp(Downstream conn, String path, String message) {
+        if (message.startsWith("ANSWER|")) {
+            message = rebaseAnswer(conn, message);
+        } else if (message.startsWith("RESUME|")) {
+            sessionTokens.put(path, message.substring("RESUME|".length()));
+        }
+        sendUp("RELAYED|" + path + "|" + message);
+    }
+
+    // Instante da resposta no relógio deste relay: cliente direto limitado a [agora - RTO, agora];
+    // relay abaixo já corrigiu até ele, só falta descontar este salto
+    private String rebaseAnswer(Downstream conn, String message) {
+        String[] parts = message.split("\\|");
+        long now = System.currentTimeMillis();
+        if (!conn.clock.ready()) {
+            return parts[0] + "|" + parts[1] + "|" + now;
+        }
+        long oneWay = Math.round(conn.clock.srtt() / 2);
+        long answeredAt = now - oneWay;
+        if (parts.length > 2) {
+            long corrected = Long.parseLong(parts[2]) - conn.clock.offset();
+            answeredAt = conn.isRelay ? Math.min(now, corrected)
+                : Math.max(now - conn.clock.rto(), Math.min(now, corrected));
+        }
+        return parts[0] + "|" + parts[1] + "|" + (answeredAt - oneWay);
+    }
+
+    private void pingDownstream() {
+        String ping = "CLOCK_PING|" + System.nanoTime() + "|" + System.currentTimeMillis();
+        for (Downstream conn : downstream.values()) {
+            conn.send(ping);
+        }
+
+        if (++pingRounds % STATS_EVERY == 0) {
+            int relays = 0;
+            for (Downstream conn : downstream.values()) {
+                if (conn.isRelay) relays++;
+            }
+            log(String.format("Conexões abaixo: %d (%d relays), sessões: %d, quadros recebidos: %d, " +
+                "entregues: %d, lentos descartados: %d", downstream.size(), relays, sessionTokens.size(),
+                framesIn.get(), framesOut.get(), slowDropped.get()));
+        }
+    }
+
+    /**
+     * Conexão abaixo: uma thread lê, outra escreve a partir de uma fila limitada.
+     * Se a fila enche, o consumidor é lento demais e a conexão é encerrada.
+     */
+    private class Downstream implements Runnable {
+        final String id;
+        final Socket socket;
+        final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(DOWNSTREAM_QUEUE);
+        final ClockOffsetEstimator clock = new ClockOffsetEstimator();
+        final Set<String> nested = ConcurrentHashMap.newKeySet(); // caminhos dos jogadores de um relay abaixo
+        volatile boolean isRelay = false;
+        private volatile boolean closed = false;
+        private Thread writer;
+
+        Downstream(String id, Socket socket) {
+            this.id = id;
+            this.socket = socket;
+        }
+
+        @Override
+        public void run() {
+            writer = new Thread(this::writeLoop, "Writer-" + id);
+            writer.start();
+            try {
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                String line;
+                while ((line = in.readLine()) != null) {
+                    handleDownstream(this, line);
+                }
+            } catch (IOException e) {
+                // Conexão encerrada
+            } finally {
+                close(true);
+            }
+        }
+
+        private void writeLoop() {
+            try {
+                OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+                while (!closed) {
+                    out.write(queue.take());
+                    if (queue.isEmpty()) {
+                        out.flush();
+                    }
+                }
+            } catch (IOException | InterruptedException e) {
+                // Conexão encerrada
+            }
+        }
+
+        void send(String line) {
+            send((line + "\n").getBytes());
+        }
+
+        void send(byte[] frame) {
+            if (closed) return;
+            if (!queue.offer(frame)) {
+                slowDropped.incrementAndGet();
+                log("Conexão " + id + " lenta demais (fila cheia): encerrando");
+                close(true);
+            }
+        }
+
+        // notifyUpstream: avisar o servidor que os jogadores desta conexão saíram.
+        void close(boolean notifyUpstream) {
+            synchronized (this) {
+                if (closed) return;
+                closed = true;
+            }
+            downstream.remove(id, this);
+            if (writer != null) writer.interrupt();
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+
+            List<String> paths = new ArrayList<>(nested);
+            paths.add(id);
+            for (String path : paths) {
+                sessionTokens.remove(path);
+                if (notifyUpstream) {
+                    sendUp("RELAY_CLOSED|" + path);
+                }
+            }
+        }
+    }
+
+    // ==================== UTILITÁRIOS ====================
+
+    private void log(String message) {
+        String timestamp = new java.text.SimpleDateFormat("HH:mm:ss.SSS").format(new Date());
+        System.out.println("[" + timestamp + "] " + message);
+    }
+
+    // ==================== MAIN ====================
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Uso: java DistributedQuizRelay <portaLocal> <host:porta acima> [host:porta ...]");
+            System.exit(1);
+        }
+
+        List<InetSocketAddress> upstreams = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            int colon = args[i].lastIndexOf(':');
+            upstreams.add(new InetSocketAddress(args[i].substring(0, colon),
+                Integer.parseInt(args[i].substring(colon + 1))));
+        }
+        new DistributedQuizRelay(Integer.parseInt(args[0]), upstreams).start();
+    }
+}
@@ -1,15 +1,42 @@
 import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Queue;
-import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.Date;
+import java.util.Random;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.Base64;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.DataFormatException;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
 import javax.swing.JFrame;
 import javax.swing.JTextArea;
 import javax.swing.JLabel;
@@ -30,16 +57,80 @@ import java.awt.Cursor;
 /**
  * Servidor Distribuído de Quiz Competitivo com Multicast e Tolerância a Falhas
  * - Descoberta automática de servidores via Multicast
- * - Heartbeat para detecção de falhas
- * - Eleição automática de coordenador
+ * - Heartbeat com detector de falhas phi-accrual adaptativo (sem SWIM disponível)
+ * - Eleição automática de coordenador (Bully orientado a eventos, timeouts por RTT)
+ * - Liderança estável com termos: coordenador saudável não é destituído por quem volta
+ * - Leases de liderança renovados por ACKs e mensagens com época (fencing)
+ * - Transferência planejada da coordenação, sem reiniciar a questão em andamento
+ * - Jogadores em qualquer servidor: seguidores retransmitem a sala e enviam respostas em lotes
+ * - Conexões reserva de clientes (STANDBY com token de sessão), promovidas por JOIN no failover
+ * - Tokens de sessão replicados para retomada rápida (RESUME) em qualquer servidor, renovados a cada JOIN
+ * - Admissão de clientes por token bucket
+ * - Capacidade anunciada no heartbeat; JOIN acima da marca d'água alta é redirecionado
+ * - Relays (DistributedQuizRelay) em árvore: uma cópia de cada quadro por relay, jogadores multiplexados,
+ *   aceitos só com o segredo compartilhado (quiz.relay.secret)
+ * - Publicação do placar agregada: no máximo um quadro por intervalo, só se mudou
+ * - Heartbeat binário de tamanho fixo com métricas de carga embutidas
+ * - Membership SWIM (sondas diretas/indiretas e disseminação por piggyback) via UDP unicast,
+ *   única fonte de falhas quando ativo; carga entre servidores segue no piggyback
+ * - Canal multicast opcional da sala para QUESTION e SCOREBOARD (TCP para respostas e reparos)
+ * - Multicast confiável por NACK (seq por emissor, buffer de retransmissão, janela por taxa)
+ * - Pré-envio cifrado da próxima questão; a revelação é um quadro curto com a chave
+ * - Relógio lógico híbrido (HLC) em todas as mensagens entre servidores e nos logs
+ * - Offset de relógio e RTT (NTP/Cristian) entre servidores e com cada cliente; pontuação por velocidade
  * - Replicação de estado
+ * - Snapshot + write-ahead log para recuperação local rápida
+ * - Transferência de estado em blocos comprimidos com checksum
+ * - Placar como CRDT (contador PN por jogador), sem exclusão mútua no caminho crítico
  */
 public class DistributedQuizServer extends JFrame {
     // Multicast Configuration
     private static final String MULTICAST_ADDRESS = "230.0.0.1";
     private static final int MULTICAST_PORT = 4446;
-    private static final int HEARTBEAT_INTERVAL = 2000; // 2 segundos
-    private static final int HEARTBEAT_TIMEOUT = 6000; // 6 segundos (3 heartbeats perdidos)
+    private static final int HEARTBEAT_INTERVAL = 500; // 500 ms
+    private static final int FAILURE_CHECK_INTERVAL = 100;
+    private static final int FALSE_POSITIVE_WINDOW = 10000; // voltou em até 10 s => falso positivo
+    private static final double PHI_THRESHOLD = Double.parseDouble(
+        System.getProperty("quiz.phi.threshold", "8.0"));
+    private static final int HEARTBEAT_TIMEOUT = 6000; // sem SWIM, enquanto o phi não tem amostras
+    
+    // Heartbeat binário (big-endian, 57 bytes):
+    // magic(1) versão(1) id(4) portaCliente(2) portaServidor(2) flags(1) relógio(8) termo(8)
+    // jogadores(2) capacidade(4) filaSaída(4) cpu‰(2) salas(2) últimoSeqControle(8) últimoSeqSala(8)
+    private static final byte HEARTBEAT_MAGIC = (byte) 0xB1; // nunca inicia uma mensagem de texto
+    private static final byte HEARTBEAT_VERSION = 3;
+    private static final int HEARTBEAT_SIZE = 57;
+    private static final byte FLAG_COORDINATOR = 0x01;
+    
+    // Membership SWIM: UDP unicast na mesma porta (número) do listener TCP de servidores
+    private static final int SWIM_PERIOD = HEARTBEAT_INTERVAL;
+    private static final int SWIM_PROBE_TIMEOUT = 200;
+    private static final int SWIM_INDIRECT_PROBES = 3;
+    private static final int SWIM_SUSPICION_MULTIPLIER = 4;
+    private static final int SWIM_RETRANSMIT_MULTIPLIER = 3;
+    private static final int SWIM_MAX_PIGGYBACK = 6;
+    private static final String SWIM_SEEDS = System.getProperty("quiz.seeds", ""); // host:porta,...
+    private static final int SWIM_SEED_MAX_INTERVAL = 8000; // backoff das sementes enquanto sozinho
+    // Com o SWIM ativo, ele é a única fonte de falhas e de membership: o heartbeat multicast
+    // vira um relatório de carga lento (clientes e descoberta) e a carga entre servidores
+    // segue no piggyback das mensagens SWIM
+    private static final int LOAD_REPORT_INTERVAL = Integer.getInteger("quiz.loadReport.interval", 1000);
+    
+    // Canal de dados da sala (-Dquiz.room.multicast=true): um datagrama por quadro,
+    // independente do número de jogadores
+    private static final boolean ROOM_MULTICAST = Boolean.getBoolean("quiz.room.multicast");
+    private static final int ROOM_MULTICAST_PORT = 4447;
+    private static final int ROOM_FRAME_MAX = 8192; // quadros maiores seguem por TCP
+    
+    // Multicast confiável: RM|emissor|fluxo|época|seq|payload. Os NACKs vão por unicast à
+    // porta de reparo do emissor: o socket SWIM, cuja porta o heartbeat anuncia (a porta do
+    // grupo é compartilhada por todos os processos do host e não identifica o emissor).
+    // Fluxo C = controle (grupo dos servidores), R = sala (grupo da sala)
+    private static final int RM_BUFFER_SIZE = 1024;   // quadros guardados para retransmissão
+    private static final double RM_RATE = 500;        // quadros/s sustentados
+    private static final int RM_WINDOW = 64;          // rajada máxima da janela de envio
+    private static final int RM_REPAIR_HOLDOFF = 50;  // suprime retransmissões repetidas do mesmo seq
+    private static final int RM_NACK_MAX_RANGE = RM_WINDOW; // quadros reparados por NACK (o resto, no próximo)
     
     // Configurações de rede
     private final int serverId;
@@ -47,6 +138,35 @@ public class DistributedQuizServer extends JFrame {
     private final int serverPort;
     private final Map<Integer, ServerInfo> activeServers = new ConcurrentHashMap<>();
     
+    // Buffers reutilizados pelo heartbeat (usados apenas pela thread do heartbeatTimer)
+    private final ByteBuffer heartbeatOut = ByteBuffer.allocate(HEARTBEAT_SIZE);
+    private DatagramPacket heartbeatPacket;
+    private final OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+    private final AtomicInteger outboundQueue = new AtomicInteger();
+    
+    // Estado SWIM (protegido por swimLock)
+    private final Object swimLock = new Object();
+    private final Map<Integer, SwimMember> swimMembers = new HashMap<>();
+    private final Map<Integer, GossipUpdate> gossipQueue = new HashMap<>();
+    private final Map<Long, RelayedProbe> relayedProbes = new HashMap<>();
+    private final List<Integer> probeOrder = new ArrayList<>();
+    private int probeIndex = 0;
+    private long swimSeq = 0;
+    private long swimIncarnation = System.currentTimeMillis(); // maior a cada reinício
+    private int probeTarget = -1;
+    private long probeSeq = -1;
+    private long probeSentAt = 0; // nanoTime do SWIM_PING direto (RTT pelo ACK)
+    private boolean probeAcked = false;
+    private volatile DatagramSocket swimSocket;
+    private Timer swimTimer;
+    
+    // Canal multicast da sala e multicast confiável
+    private InetAddress roomGroup;
+    private ReliableMulticastSender controlSender;
+    private ReliableMulticastSender roomSender;
+    private final Map<Integer, ReliableMulticastReceiver> controlReceivers = new ConcurrentHashMap<>();
+    private final LatencyStats repairLatency = new LatencyStats();
+    
     // Servidores TCP/UDP
     private ServerSocket clientListener;
     private ServerSocket serverListener;
@@ -56,32 +176,119 @@ public class DistributedQuizServer extends JFrame {
     // Estado do servidor
     private volatile boolean isCoordinator = false;
     private volatile int coordinatorId = -1;
-    private int lamportClock = 0;
+    // Relógio lógico híbrido (HLC): ms físicos nos 48 bits altos, contador lógico nos
+    // 16 baixos. Ordena como um relógio de Lamport e fica sempre próximo do tempo real.
+    private long hlcClock = 0;
+    private static final int HLC_LOGICAL_BITS = 16;
+    private static final long HLC_MAX_DRIFT = Long.getLong("quiz.hlc.maxDrift", 1000);
+    private volatile long lastDriftWarning = 0;
+    private final LatencyStats replicationLag = new LatencyStats();
+    private static final int REPLICATION_LAG_REPORT = 100; // eventos entre relatórios de atraso
     private final Object clockLock = new Object();
     private volatile boolean running = true;
     
     // Clientes e outros servidores
     private final Map<String, ClientHandler> clients = new ConcurrentHashMap<>();
+    private final Map<String, ClientHandler> clientsByName = new ConcurrentHashMap<>(); // índice por jogador
+    
+    // Relays conectados: cada um recebe uma cópia dos quadros da sala e multiplexa os
+    // seus jogadores (RELAYED para cá, TO de volta) na mesma conexão. Um relay só é
+    // aceito com o segredo compartilhado (-Dquiz.relay.secret); sem ele, relays ficam desativados
+    private static final String RELAY_SECRET = System.getProperty("quiz.relay.secret", "");
+    private static final int RELAY_HOP_BUDGET = Integer.getInteger("quiz.relay.hopBudget", 250); // ms por salto
+    private final Map<String, ClientHandler> relayLinks = new ConcurrentHashMap<>();
+    
+    // Controle de ondas de reconexão: admissão por token bucket
+    private static final double ADMISSION_RATE = Double.parseDouble(
+        System.getProperty("quiz.admission.rate", "100")); // clientes/s
+    private static final int ADMISSION_BURST = Integer.getInteger("quiz.admission.burst", 20);
+    private final TokenBucket admissionBucket = new TokenBucket(ADMISSION_RATE, ADMISSION_BURST);
+    
+    // Capacidade anunciada no heartbeat; acima da marca d'água alta um JOIN é
+    // redirecionado a um par abaixo dela (escolhido entre dois sorteados)
+    private static final int CAPACITY = Integer.getInteger("quiz.capacity", 500);
+    private static final double HIGH_WATER = Double.parseDouble(System.getProperty("quiz.highWater", "0.8"));
+    private static final int MAX_REDIRECT_HOPS = 2; // JOIN já redirecionado tantas vezes é aceito
+    private final AtomicLong redirectedJoins = new AtomicLong();
+    
+    // Publicação agregada do placar
+    private static final int SCOREBOARD_PUBLISH_INTERVAL = Integer.getInteger("quiz.scoreboard.interval", 250);
+    private final Timer broadcastTimer = new Timer("ScoreboardBroadcast", true);
+    private final Object publishLock = new Object();
+    private boolean publishPending = false;
+    private long lastPublishAt = 0;
+    private String lastPublishedBoard = null; // acessado só pela thread do broadcastTimer
     private final Map<Integer, ServerConnection> servers = new ConcurrentHashMap<>();
     
     // Estado do jogo (replicado)
-    private final Map<String, Integer> globalScoreboard = new ConcurrentHashMap<>();
+    private final Map<String, Integer> globalScoreboard = new ConcurrentHashMap<>(); // visão materializada
+    private final Map<String, ScoreCounter> scoreCounters = new ConcurrentHashMap<>();
     private List<Question> questions = new ArrayList<>();
     private volatile int currentQuestionIndex = 0;
     private volatile boolean gameActive = false;
     
-    // Ricart-Agrawala para exclusão mútua
-    private final Queue<MutexRequest> requestQueue = new PriorityQueue<>();
-    private volatile boolean requestingCS = false;
-    private int requestTimestamp = 0;
-    private final Set<Integer> replyReceived = ConcurrentHashMap.newKeySet();
+    // Sessões de jogadores (token opaco -> sessão), replicadas no cluster
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final Map<String, Session> sessionsByName = new ConcurrentHashMap<>();
+    private final SecureRandom tokenRandom = new SecureRandom();
     
     // Correção 1: Race condition na eleição
     private final Object electionLock = new Object();
-    private volatile boolean electionInProgress = false;
+    private ElectionState electionState = ElectionState.IDLE;
+    private int electionRound = 0;
+    private TimerTask electionTimeout = null;
+    private final Timer electionTimer = new Timer("ElectionTimer", true);
+    private volatile long leaderlessSince = -1;
+    private volatile long currentTerm = 0; // termo (época) do coordenador atual
+    
+    // Lease de liderança: o coordenador só age com ACK recente da maioria; cada
+    // seguidor só reconhece outro coordenador depois que o lease concedido expira
+    private static final int LEASE_DURATION = 3 * HEARTBEAT_INTERVAL;
+    private static final int LEASE_RETRY_INTERVAL = 100;
+    private static final int LEASE_MAX_RETRIES = 2 * LEASE_DURATION / LEASE_RETRY_INTERVAL;
+    // A maioria é contada sobre todos os servidores já vistos (ou quiz.cluster.size, se
+    // maior), nunca só sobre os vivos: numa partição o lado minoritário perde o lease
+    private static final int CLUSTER_SIZE = Integer.getInteger("quiz.cluster.size", 0);
+    private final Set<Integer> knownMembers = ConcurrentHashMap.newKeySet();
+    private final Map<Integer, Long> leaseAcks = new ConcurrentHashMap<>();
+    private volatile int grantedLeaseTo = -1;
+    private volatile long grantedLeaseUntil = 0;
+    private final LatencyStats leaderlessTime = new LatencyStats();
+    
+    // RTT medido entre servidores (SRV_PING/SRV_PONG), usado nos timeouts da eleição
+    private final Map<Integer, RttEstimator> peerRtt = new ConcurrentHashMap<>();
+    
+    // Offset de relógio (NTP/Cristian) em relação a cada par e a cada cliente, estimado
+    // pelos mesmos ping/pong; converte instantes de resposta para o relógio do coordenador
+    private final Map<Integer, ClockOffsetEstimator> peerClock = new ConcurrentHashMap<>();
+    private static final int CLOCK_PING_INTERVAL = Integer.getInteger("quiz.clock.interval", 2000);
+    private static final int CLOCK_STATS_EVERY = 15; // rodadas de CLOCK_PING entre relatórios de RTT
+    private final LatencyStats clientRtt = new LatencyStats();
+    
+    // Seguidores aceitam jogadores: o coordenador lhes repassa os quadros da sala (RELAY)
+    // e recebe de volta as respostas agrupadas em ANSWER_BATCH
+    private static final int ANSWER_BATCH_INTERVAL = Integer.getInteger("quiz.answer.batch", 20);
+    private final Queue<String> forwardQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean forwardScheduled = new AtomicBoolean(false);
+    private int clockPingRounds = 0; // só a thread do heartbeatTimer
+    private int heartbeatTicks = 0;  // idem
+    
+    // Pontuação por velocidade: acerto vale a base mais um bônus proporcional ao tempo restante
+    private static final int SPEED_BASE_POINTS = 50;
+    private static final int SPEED_BONUS_POINTS = 50;
     
     // Correção 2: Timer gerenciado
+    private static final int QUESTION_DURATION = 15000;
+    private static final int SCOREBOARD_PAUSE = 3000;
     private Timer currentQuestionTimer = null;
+    private volatile long questionDeadline = 0; // fim da questão em andamento (0 = nenhuma)
+    private volatile long nextQuestionAt = 0;   // início da próxima questão (pausa do placar)
+    private volatile SealedQuestion prefetchedQuestion = null; // próxima questão já enviada cifrada
+    
+    // Transferência planejada da coordenação
+    private static final int HANDOFF_TIMEOUT = 3000;
+    private volatile boolean handoffInProgress = false;
+    private volatile long handoffStartedAt = 0;
     
     // Correção 4: Estado da pergunta atual
     private QuestionState currentQuestionState = null;
@@ -98,23 +305,63 @@ public class DistributedQuizServer extends JFrame {
     private JLabel serversLabel;
     private JButton startGameButton;
     private JButton electButton;
+    private JButton handoffButton;
     
     // Heartbeat tracking
     private final Map<Integer, Long> lastHeartbeat = new ConcurrentHashMap<>();
+    private final Map<Integer, PhiAccrualDetector> failureDetectors = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> declaredFailedAt = new ConcurrentHashMap<>();
+    private final LatencyStats detectionLatency = new LatencyStats();
+    private int falsePositives = 0;
     private Timer heartbeatTimer;
     private Timer failureDetectionTimer;
     
+    // Persistência: snapshot binário + write-ahead log (WAL) compactado
+    private static final int SNAPSHOT_INTERVAL = 30000; // 30 segundos
+    private static final int SNAPSHOT_MAX_WAL_ENTRIES = 1000;
+    private static final int SNAPSHOT_MAGIC = 0x51534E50; // "QSNP"
+    private static final int SNAPSHOT_VERSION = 4;
+    private static final int WAL_MAGIC = 0x5157414C; // "QWAL"
+    private static final int WAL_VERSION = 2;        // registro: seq, termo, ação, dados
+    private final File snapshotFile;
+    private final File walFile;
+    private final Object persistenceLock = new Object();
+    private DataOutputStream walOut;
+    private int walEntries = 0;
+    private long snapshotSeq = 0;
+    private boolean snapshotDirty = false;
+    private volatile long replicationSeq = 0; // último evento de replicação aplicado
+    private volatile long replicationTerm = 0; // mandato do coordenador que sequenciou esse evento
+    private Timer snapshotTimer;
+    
+    // Log de replicação retido em memória para sincronização incremental
+    private static final int RETAINED_LOG_SIZE = 4096;
+    private static final int RESYNC_RETRY_INTERVAL = 2000;
+    private final ArrayDeque<WalEntry> retainedLog = new ArrayDeque<>();
+    private volatile long lastResyncRequest = 0;
+    
+    // Transferência de estado em blocos (SYNC_BEGIN / SYNC_CHUNK / SYNC_END)
+    private static final int SYNC_CHUNK_SIZE = 32 * 1024;
+    private final Map<Integer, StateTransfer> incomingTransfers = new ConcurrentHashMap<>();
+    
     public DistributedQuizServer(int serverId, int clientPort, int serverPort) {
         this.serverId = serverId;
         this.clientPort = clientPort;
         this.serverPort = serverPort;
+        this.snapshotFile = new File("quiz_server_" + serverId + ".snapshot");
+        this.walFile = new File("quiz_server_" + serverId + ".wal");
         
         initializeQuestions();
         setupGUI();
+        recoverLocalState();
+        startSnapshotting();
         startServer();
         startMulticastDiscovery();
+        startSwim();
         startHeartbeat();
-        startFailureDetection();
+        if (swimSocket == null) {
+            startFailureDetection(); // sem SWIM: phi-accrual sobre o heartbeat multicast
+        }
         
         // Iniciar eleição após 5 segundos se não houver coordenador
         new Timer().schedule(new TimerTask() {
@@ -188,7 +435,7 @@ public class DistributedQuizServer extends JFrame {
         playersLabel.setFont(new Font("SansSerif", Font.PLAIN, 13));
         playersLabel.setForeground(Color.BLACK);
         
-        clockLabel = new JLabel("Relógio Lamport: 0");
+        clockLabel = new JLabel("Relógio HLC: -");
         clockLabel.setFont(new Font("SansSerif", Font.PLAIN, 13));
         clockLabel.setForeground(Color.BLACK);
         
@@ -217,8 +464,20 @@ public class DistributedQuizServer extends JFrame {
         electButton.addActionListener(e -> startElection());
         electButton.setVisible(false);
         
+        handoffButton = new JButton("Transferir Coordenação");
+        handoffButton.setEnabled(false);
+        handoffButton.setBackground(new Color(63, 81, 181));
+        handoffButton.setForeground(Color.WHITE);
+        handoffButton.setFont(new Font("SansSerif", Font.BOLD, 13));
+        handoffButton.setBorderPainted(false);
+        handoffButton.setFocusPainted(false);
+        handoffButton.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+        handoffButton.setPreferredSize(new Dimension(190, 35));
+        handoffButton.addActionListener(e -> promptLeadershipTransfer());
+        
         buttonPanel.add(startGameButton);
         buttonPanel.add(electButton);
+        buttonPanel.add(handoffButton);
         
         statusGrid.add(statusLabel);
         statusGrid.add(coordLabel);
@@ -276,7 +535,7 @@ public class DistributedQuizServer extends JFrame {
         
         // Fallback: procurar primeira interface válida
         try {
-            java.util.Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+            Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
             while (interfaces.hasMoreElements()) {
                 NetworkInterface netIf = interfaces.nextElement();
                 if (netIf.isUp() && netIf.supportsMulticast() && !netIf.isLoopback()) {
@@ -294,6 +553,9 @@ public class DistributedQuizServer extends JFrame {
         new Thread(() -> {
             try {
                 multicastGroup = InetAddress.getByName(MULTICAST_ADDRESS);
+                roomGroup = InetAddress.getByName("230.0.1." + (Math.abs(serverId) % 254 + 1));
+                controlSender = new ReliableMulticastSender(serverId, "C", multicastGroup, MULTICAST_PORT);
+                roomSender = new ReliableMulticastSender(serverId, "R", roomGroup, ROOM_MULTICAST_PORT);
                 multicastSocket = new MulticastSocket(MULTICAST_PORT);
                 
                 // Join multicast group
@@ -306,14 +568,22 @@ public class DistributedQuizServer extends JFrame {
                 multicastSocket.joinGroup(new InetSocketAddress(multicastGroup, MULTICAST_PORT), netIf);
                 log("Entrou no grupo Multicast: " + MULTICAST_ADDRESS);
                 
-                // Listen for multicast messages
+                // Listen for multicast messages (pacote e buffer reutilizados)
                 byte[] buffer = new byte[1024];
+                ByteBuffer view = ByteBuffer.wrap(buffer);
+                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
                 while (running) {
-                    DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                    packet.setLength(buffer.length);
                     multicastSocket.receive(packet);
                     
-                    String message = new String(packet.getData(), 0, packet.getLength());
-                    processMulticastMessage(message, packet.getAddress());
+                    if (packet.getLength() >= HEARTBEAT_SIZE && buffer[0] == HEARTBEAT_MAGIC) {
+                        view.clear();
+                        view.limit(packet.getLength());
+                        processHeartbeat(view, packet.getAddress());
+                        continue;
+                    }
+                    String message = new String(buffer, 0, packet.getLength(), StandardCharsets.UTF_8);
+                    processMulticastMessage(message, (InetSocketAddress) packet.getSocketAddress());
                 }
             } catch (IOException e) {
                 if (running) {
@@ -330,9 +600,19 @@ public class DistributedQuizServer extends JFrame {
         heartbeatTimer.scheduleAtFixedRate(new TimerTask() {
             @Override
             public void run() {
-                sendHeartbeat();
+                int every = Math.max(1, LOAD_REPORT_INTERVAL / HEARTBEAT_INTERVAL);
+                if (swimSocket == null || heartbeatTicks++ % every == 0) {
+                    sendHeartbeat();
+                }
+                pingServers();
             }
         }, 1000, HEARTBEAT_INTERVAL);
+        heartbeatTimer.scheduleAtFixedRate(new TimerTask() {
+            @Override
+            public void run() {
+                pingClients();
+            }
+        }, CLOCK_PING_INTERVAL, CLOCK_PING_INTERVAL);
     }
     
     private void sendHeartbeat() {
@@ -343,14 +623,29 @@ public class DistributedQuizServer extends JFrame {
         
         try {
             incrementClock();
-            String message = String.format("HEARTBEAT|%d|%d|%d|%b|%d",
-                serverId, clientPort, serverPort, isCoordinator, lamportClock);
+            if (heartbeatPacket == null) {
+                heartbeatPacket = new DatagramPacket(
+                    heartbeatOut.array(), HEARTBEAT_SIZE, multicastGroup, MULTICAST_PORT);
+            }
             
-            byte[] buffer = message.getBytes();
-            DatagramPacket packet = new DatagramPacket(
-                buffer, buffer.length, multicastGroup, MULTICAST_PORT);
+            heartbeatOut.clear();
+            heartbeatOut.put(HEARTBEAT_MAGIC)
+                .put(HEARTBEAT_VERSION)
+                .putInt(serverId)
+                .putShort((short) clientPort)
+                .putShort((short) serverPort)
+                .put(isCoordinator ? FLAG_COORDINATOR : 0)
+                .putLong(hlcClock)
+                .putLong(currentTerm)
+                .putShort((short) Math.min(clients.size(), Short.MAX_VALUE))
+                .putInt(CAPACITY)
+                .putInt(outboundQueue.get())
+                .putShort(cpuLoadPermille())
+                .putShort(activeRooms())
+                .putLong(controlSender != null ? controlSender.lastSeq() : 0)
+                .putLong(roomSender != null ? roomSender.lastSeq() : 0);
             
-            multicastSocket.send(packet);
+            multicastSocket.send(heartbeatPacket);
             
         } catch (IOException e) {
             if (running) {
@@ -359,6 +654,77 @@ public class DistributedQuizServer extends JFrame {
         }
     }
     
+    // Carga média por núcleo em milésimos (-1 quando o SO não informa).
+    private short cpuLoadPermille() {
+        double load = osBean.getSystemLoadAverage();
+        if (load < 0) return -1;
+        return (short) Math.min(Short.MAX_VALUE, load / osBean.getAvailableProcessors() * 1000);
+    }
+    
+    private short activeRooms() {
+        return (short) (gameActive ? 1 : 0); // uma sala de jogo por servidor
+    }
+    
+    // Relógio e RTT só no eixo coordenador-seguidor (o RTT entre seguidores vem dos ACKs do SWIM);
+    // do coordenador sai um único LEASE_RENEW por seguidor, que também serve de ping
+    private void pingServers() {
+        if (isCoordinator) {
+            renewLeases();
+        } else if (coordinatorId != -1) {
+            sendToServer(coordinatorId, "SRV_PING|" + System.nanoTime() + "|" + System.currentTimeMillis());
+        }
+    }
+    
+    // Ping de relógio para os clientes; o CLOCK_PONG alimenta o offset e o RTT de cada um.
+    private void pingClients() {
+        // Jogadores atrás de relays não: o relay mede a sua ligação com eles
+        List<ClientHandler> direct = new ArrayList<>(relayLinks.values());
+        for (ClientHandler client : clients.values()) {
+            if (client.link == null) direct.add(client);
+        }
+        String ping = "CLOCK_PING|" + System.nanoTime() + "|" + System.currentTimeMillis();
+        for (ClientHandler client : direct) {
+            client.sendMessage(ping);
+        }
+        
+        if (++clockPingRounds % CLOCK_STATS_EVERY == 0 && clientRtt.getCount() > 0) {
+            ClientHandler slowest = null;
+            for (ClientHandler client : direct) {
+                if (client.clock.ready() && (slowest == null || client.clock.srtt() > slowest.clock.srtt())) {
+                    slowest = client;
+                }
+            }
+            log("RTT dos clientes: " + clientRtt + (slowest == null ? "" : String.format(
+                ", mais lento: %s (srtt=%.1f ms, offset=%d ms)",
+                slowest.getPlayerName(), slowest.clock.srtt(), slowest.clock.offset())));
+        }
+    }
+    
+    // Duas escolhas aleatórias entre os pares abaixo da marca d'água alta; vence o menos ocupado
+    private ServerInfo pickRedirectTarget() {
+        long now = System.currentTimeMillis();
+        long maxAge = 3 * (swimSocket != null ? LOAD_REPORT_INTERVAL : HEARTBEAT_INTERVAL);
+        List<ServerInfo> eligible = new ArrayList<>();
+        for (ServerInfo info : activeServers.values()) {
+            if (info.id != serverId && now - info.lastSeen < maxAge &&
+                info.utilization() < HIGH_WATER) {
+                eligible.add(info);
+            }
+        }
+        if (eligible.isEmpty()) return null;
+        
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        ServerInfo first = eligible.get(random.nextInt(eligible.size()));
+        ServerInfo second = eligible.get(random.nextInt(eligible.size()));
+        return second.utilization() < first.utilization() ? second : first;
+    }
+    
+    // Converte um instante do relógio do servidor 'fromId' para o relógio local.
+    private long toLocalClock(int fromId, long remoteMillis) {
+        ClockOffsetEstimator clock = peerClock.get(fromId);
+        return clock != null && clock.ready() ? remoteMillis - clock.offset() : System.currentTimeMillis();
+    }
+    
     private void startFailureDetection() {
         failureDetectionTimer = new Timer(true);
         failureDetectionTimer.scheduleAtFixedRate(new TimerTask() {
@@ -366,7 +732,7 @@ public class DistributedQuizServer extends JFrame {
             public void run() {
                 detectFailures();
             }
-        }, HEARTBEAT_TIMEOUT, HEARTBEAT_INTERVAL);
+        }, HEARTBEAT_INTERVAL, FAILURE_CHECK_INTERVAL);
     }
     
     private void detectFailures() {
@@ -374,20 +740,53 @@ public class DistributedQuizServer extends JFrame {
         List<Integer> failedServers = new ArrayList<>();
         
         for (Map.Entry<Integer, Long> entry : lastHeartbeat.entrySet()) {
-            if (now - entry.getValue() > HEARTBEAT_TIMEOUT) {
+            PhiAccrualDetector detector = failureDetectors.get(entry.getKey());
+            
+            // Só sem SWIM: phi-accrual sobre os heartbeats multicast e, enquanto o phi
+            // não tem amostras suficientes, um timeout fixo
+            boolean suspected = detector != null && detector.isReady()
+                ? detector.phi(now) > PHI_THRESHOLD
+                : now - entry.getValue() > HEARTBEAT_TIMEOUT;
+            if (suspected) {
                 failedServers.add(entry.getKey());
             }
         }
         
         for (Integer failedId : failedServers) {
+            Long last = lastHeartbeat.get(failedId);
+            if (last != null) {
+                long latency = detectionLatency.record((now - last) * 1_000_000L);
+                PhiAccrualDetector detector = failureDetectors.get(failedId);
+                log(String.format("Servidor #%d suspeito: %d ms sem heartbeat (phi=%.1f, limiar=%.1f)",
+                    failedId, latency, detector != null ? detector.phi(now) : 0.0, PHI_THRESHOLD));
+                declaredFailedAt.put(failedId, now);
+            }
             handleServerFailure(failedId);
         }
     }
     
+    private void heartbeatReceived(int senderId) {
+        long now = System.currentTimeMillis();
+        lastHeartbeat.put(senderId, now);
+        failureDetectors.computeIfAbsent(senderId, k -> new PhiAccrualDetector()).heartbeat(now);
+        
+        // Heartbeat de um servidor declarado morto há pouco: a detecção foi um falso positivo
+        Long failedAt = declaredFailedAt.remove(senderId);
+        if (failedAt != null && now - failedAt < FALSE_POSITIVE_WINDOW) {
+            synchronized (detectionLatency) {
+                falsePositives++;
+            }
+            log("Falso positivo: servidor #" + senderId + " voltou " + (now - failedAt) + 
+                " ms após ser declarado falho (detecções: " + detectionLatency + 
+                ", falsos positivos: " + falsePositives + ")");
+        }
+    }
+    
     private void handleServerFailure(int failedId) {
         log("FALHA DETECTADA: Servidor #" + failedId + " não responde!");
         
         lastHeartbeat.remove(failedId);
+        failureDetectors.remove(failedId);
         activeServers.remove(failedId);
         ServerConnection conn = servers.remove(failedId);
         if (conn != null) {
@@ -396,123 +795,625 @@ public class DistributedQuizServer extends JFrame {
         
         updateServerCount();
         
-        // Se o coordenador falhou, iniciar eleição
+        peerRtt.remove(failedId);
+        updatePlayerCount();
+        
+        // Se o coordenador falhou, iniciar eleição imediatamente: quem ainda não
+        // detectou a falha responde OK e entra na eleição ao receber ELECTION
         if (failedId == coordinatorId) {
             log("COORDENADOR FALHOU! Iniciando eleição automática...");
             coordinatorId = -1;
             isCoordinator = false;
+            leaderlessSince = System.currentTimeMillis();
             updateCoordLabel();
-            
-            // Aguardar um pouco para garantir que todos detectaram
-            new Thread(() -> {
-                try {
-                    Thread.sleep(1000);
-                    startElection();
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-            }).start();
+            startElection();
         }
     }
     
-    private void processMulticastMessage(String message, InetAddress from) {
-        String[] parts = message.split("\\|");
+    private void processHeartbeat(ByteBuffer in, InetAddress from) {
+        in.get(); // magic
+        if (in.get() != HEARTBEAT_VERSION) return;
+        int senderId = in.getInt();
+        
+        // Ignorar próprio heartbeat
+        if (senderId == this.serverId) return;
         
-        if (parts[0].equals("HEARTBEAT")) {
-            int senderId = Integer.parseInt(parts[1]);
+        int senderClientPort = in.getShort() & 0xFFFF;
+        int senderServerPort = in.getShort() & 0xFFFF;
+        boolean senderIsCoord = (in.get() & FLAG_COORDINATOR) != 0;
+        long senderClock = in.getLong();
+        long senderTerm = in.getLong();
+        
+        updateClock(senderClock);
+        
+        // Atualizar informações do servidor
+        heartbeatReceived(senderId);
+        
+        ServerInfo info = activeServers.get(senderId);
+        if (info == null) {
+            info = new ServerInfo(senderId, from.getHostAddress(), 
+                senderClientPort, senderServerPort);
+            activeServers.put(senderId, info);
+            knownMembers.add(senderId);
+            log("Novo servidor descoberto: #" + senderId + " em " + from.getHostAddress());
             
-            // Ignorar próprio heartbeat
-            if (senderId == this.serverId) return;
+            // Conectar ao novo servidor
+            connectToServer(senderId, from.getHostAddress(), senderServerPort);
             
-            int senderClientPort = Integer.parseInt(parts[2]);
-            int senderServerPort = Integer.parseInt(parts[3]);
-            boolean senderIsCoord = Boolean.parseBoolean(parts[4]);
-            int senderClock = Integer.parseInt(parts[5]);
+            updateServerCount();
+            applySwimUpdate(senderId, SwimMember.ALIVE, -1, from.getHostAddress(),
+                senderClientPort, senderServerPort, false);
+        }
+        
+        // Endereço de reparo em cache: o caminho de cada heartbeat não aloca
+        InetSocketAddress repairAddress = info.repairAddress;
+        if (repairAddress == null || repairAddress.getPort() != senderServerPort
+                || !repairAddress.getAddress().equals(from)) {
+            info.repairAddress = new InetSocketAddress(from, senderServerPort);
+        }
+        
+        // Métricas de carga embutidas no heartbeat
+        applyPeerLoad(senderId, info, in.getShort(), in.getInt(), in.getInt(), in.getShort(),
+            in.getShort(), in.getLong());
+        
+        // Atualizar status do coordenador (respeitando o termo)
+        if (senderIsCoord) {
+            acceptCoordinator(senderId, senderTerm);
+        }
+    }
+    
+    // Carga e último seq de controle de um par, do heartbeat multicast ou do piggyback SWIM
+    private void applyPeerLoad(int peerId, ServerInfo info, int players, int capacity, int queue,
+                               int cpuLoad, int rooms, long controlSeq) {
+        info.lastSeen = System.currentTimeMillis();
+        boolean playersChanged = players != info.players;
+        info.players = players;
+        info.pendingRedirects.set(0); // o relatório já conta quem chegou
+        info.capacity = capacity;
+        info.outboundQueue = queue;
+        info.cpuLoad = cpuLoad;
+        info.activeRooms = rooms;
+        
+        // Último seq do fluxo de controle: detecta perda do último quadro (sem sucessor)
+        ReliableMulticastReceiver receiver = controlReceivers.computeIfAbsent(peerId,
+            k -> new ReliableMulticastReceiver());
+        receiver.observeLatest(controlSeq);
+        sendNackIfDue(peerId, "C", receiver, info.repairAddress);
+        
+        // Jogadores de um seguidor contam para habilitar o início do jogo
+        if (playersChanged) {
+            updatePlayerCount();
+        }
+    }
+    
+    // ==================== MEMBERSHIP SWIM ====================
+    
+    /*
+     * Mensagens (texto, UDP): TIPO|seq|id|encarnação|portaCliente|portaServidor|alvo|carga|updates
+     * onde carga = jogadores:capacidade:filaSaída:cpu‰:salas:últimoSeqControle e updates = "-"
+     * ou lista "E:id:encarnação:portaCliente:portaServidor:host" (E = A/S/D) separada por
+     * vírgulas. Cada período sonda um único membro, então a detecção de falhas e a
+     * disseminação custam o mesmo por nó qualquer que seja o tamanho do cluster. Com o
+     * SWIM ativo não há outro detector; o heartbeat multicast cai para LOAD_REPORT_INTERVAL
+     * e só informa clientes e descobre servidores. Os links TCP entre servidores ficam
+     * ociosos fora da replicação; o único tráfego periódico neles é o eixo do lease
+     * (um LEASE_RENEW do coordenador e um SRV_PING de cada seguidor por intervalo).
+     */
+    
+    private void startSwim() {
+        try {
+            swimSocket = new DatagramSocket(serverPort);
+        } catch (SocketException e) {
+            log("SWIM indisponível na porta UDP " + serverPort + ": " + e.getMessage());
+            return;
+        }
+        new Thread(this::swimReceiveLoop, "SwimListener").start();
+        
+        swimTimer = new Timer("Swim", true);
+        swimTimer.scheduleAtFixedRate(new TimerTask() {
+            @Override
+            public void run() {
+                swimProtocolPeriod();
+            }
+        }, SWIM_PERIOD, SWIM_PERIOD);
+        
+        // Sementes: permitem formar o cluster mesmo sem multicast
+        List<InetSocketAddress> seeds = new ArrayList<>();
+        for (String seed : SWIM_SEEDS.split(",")) {
+            if (seed.trim().isEmpty()) continue;
+            String[] hostPort = seed.trim().split(":");
+            seeds.add(new InetSocketAddress(hostPort[0], Integer.parseInt(hostPort[1])));
+        }
+        if (!seeds.isEmpty()) {
+            pingSeeds(seeds, SWIM_PERIOD);
+        }
+    }
+    
+    // Sonda as sementes até conhecer algum membro (o resto chega por gossip);
+    // o intervalo dobra até SWIM_SEED_MAX_INTERVAL enquanto ninguém responde
+    private void pingSeeds(List<InetSocketAddress> seeds, long interval) {
+        synchronized (swimLock) {
+            if (!swimMembers.isEmpty() || !running) return;
+        }
+        for (InetSocketAddress seed : seeds) {
+            long seq;
+            synchronized (swimLock) {
+                seq = ++swimSeq;
+            }
+            sendSwim("SWIM_PING", seq, seed, -1);
+        }
+        swimTimer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                pingSeeds(seeds, Math.min(SWIM_SEED_MAX_INTERVAL, interval * 2));
+            }
+        }, interval);
+    }
+    
+    private void swimReceiveLoop() {
+        byte[] buffer = new byte[2048];
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+        while (running) {
+            try {
+                packet.setLength(buffer.length);
+                swimSocket.receive(packet);
+                String message = new String(buffer, 0, packet.getLength(), StandardCharsets.UTF_8);
+                if (message.startsWith("RM_")) {
+                    // Mesmo socket serve de porta de reparo do multicast confiável
+                    handleRepairMessage(message, (InetSocketAddress) packet.getSocketAddress());
+                } else {
+                    handleSwimMessage(message, (InetSocketAddress) packet.getSocketAddress());
+                }
+            } catch (IOException e) {
+                if (running) {
+                    log("Erro no SWIM: " + e.getMessage());
+                }
+            } catch (RuntimeException e) {
+                log("Mensagem SWIM inválida: " + e.getMessage());
+            }
+        }
+    }
+    
+    private void swimProtocolPeriod() {
+        List<Integer> dead = new ArrayList<>();
+        SwimMember target;
+        long seq;
+        synchronized (swimLock) {
+            long now = System.currentTimeMillis();
             
-            updateClock(senderClock);
+            // 1. Sondagem anterior sem ACK direto nem indireto: membro suspeito
+            if (probeTarget != -1 && !probeAcked) {
+                SwimMember member = swimMembers.get(probeTarget);
+                if (member != null && member.state == SwimMember.ALIVE) {
+                    member.setState(SwimMember.SUSPECT, now);
+                    enqueueGossip(member);
+                    log("SWIM: servidor #" + member.id + " suspeito");
+                }
+            }
             
-            // Atualizar informações do servidor
-            lastHeartbeat.put(senderId, System.currentTimeMillis());
+            // 2. Suspeitos que não refutaram dentro do prazo: mortos
+            long suspicionTimeout = (long) (SWIM_SUSPICION_MULTIPLIER * 
+                Math.max(1.0, Math.log10(swimMembers.size() + 1)) * SWIM_PERIOD);
+            for (SwimMember member : swimMembers.values()) {
+                if (member.state == SwimMember.SUSPECT && now - member.stateSince > suspicionTimeout) {
+                    member.setState(SwimMember.DEAD, now);
+                    enqueueGossip(member);
+                    dead.add(member.id);
+                }
+            }
+            relayedProbes.values().removeIf(relay -> now - relay.createdAt > 2 * SWIM_PERIOD);
             
-            ServerInfo info = activeServers.get(senderId);
-            if (info == null) {
-                info = new ServerInfo(senderId, from.getHostAddress(), 
-                    senderClientPort, senderServerPort);
-                activeServers.put(senderId, info);
-                log("Novo servidor descoberto: #" + senderId + " em " + from.getHostAddress());
-                
-                // Conectar ao novo servidor
-                connectToServer(senderId, from.getHostAddress(), senderServerPort);
+            // 3. Próximo alvo: round-robin sobre uma ordem embaralhada a cada volta
+            target = nextProbeTarget();
+            probeTarget = target != null ? target.id : -1;
+            probeAcked = false;
+            seq = ++swimSeq;
+            probeSeq = seq;
+            probeSentAt = System.nanoTime();
+        }
+        
+        for (Integer id : dead) {
+            onSwimMemberDead(id);
+        }
+        if (target == null) return;
+        
+        sendSwim("SWIM_PING", seq, target.address(), -1);
+        
+        // Sem ACK direto a tempo: pedir a k membros que sondem o alvo por nós
+        RttEstimator rtt = peerRtt.get(target.id);
+        long timeout = Math.min(SWIM_PERIOD / 2, rtt != null ? rtt.rto() : SWIM_PROBE_TIMEOUT);
+        swimTimer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                probeIndirectly(target.id, seq);
+            }
+        }, timeout);
+    }
+    
+    private void probeIndirectly(int targetId, long seq) {
+        List<SwimMember> helpers = new ArrayList<>();
+        synchronized (swimLock) {
+            if (probeSeq != seq || probeAcked) return;
+            for (SwimMember member : swimMembers.values()) {
+                if (member.id != targetId && member.state == SwimMember.ALIVE) {
+                    helpers.add(member);
+                }
+            }
+        }
+        Collections.shuffle(helpers);
+        for (SwimMember helper : helpers.subList(0, Math.min(SWIM_INDIRECT_PROBES, helpers.size()))) {
+            sendSwim("SWIM_PING_REQ", seq, helper.address(), targetId);
+        }
+    }
+    
+    private SwimMember nextProbeTarget() {
+        if (probeIndex >= probeOrder.size()) {
+            probeOrder.clear();
+            for (SwimMember member : swimMembers.values()) {
+                if (member.state != SwimMember.DEAD) probeOrder.add(member.id);
+            }
+            Collections.shuffle(probeOrder);
+            probeIndex = 0;
+        }
+        while (probeIndex < probeOrder.size()) {
+            SwimMember member = swimMembers.get(probeOrder.get(probeIndex++));
+            if (member != null && member.state != SwimMember.DEAD) return member;
+        }
+        return null;
+    }
+    
+    private void handleSwimMessage(String message, InetSocketAddress from) {
+        String[] parts = message.split("\\|");
+        String type = parts[0];
+        long seq = Long.parseLong(parts[1]);
+        int fromId = Integer.parseInt(parts[2]);
+        if (fromId == serverId) return;
+        int target = Integer.parseInt(parts[6]);
+        
+        // Toda mensagem é contato direto: o remetente está vivo nesta encarnação
+        applySwimUpdate(fromId, SwimMember.ALIVE, Long.parseLong(parts[3]), from.getAddress().getHostAddress(),
+            Integer.parseInt(parts[4]), Integer.parseInt(parts[5]), true);
+        ServerInfo info = activeServers.get(fromId);
+        if (info != null) {
+            if (!from.equals(info.repairAddress)) {
+                info.repairAddress = from; // o socket SWIM é a porta de reparo
+            }
+            String[] load = parts[7].split(":");
+            applyPeerLoad(fromId, info, Integer.parseInt(load[0]), Integer.parseInt(load[1]),
+                Integer.parseInt(load[2]), Integer.parseInt(load[3]), Integer.parseInt(load[4]),
+                Long.parseLong(load[5]));
+        }
+        if (!parts[8].equals("-")) {
+            for (String update : parts[8].split(",")) {
+                String[] fields = update.split(":", 6);
+                int state = fields[0].equals("A") ? SwimMember.ALIVE
+                    : fields[0].equals("S") ? SwimMember.SUSPECT : SwimMember.DEAD;
+                applySwimUpdate(Integer.parseInt(fields[1]), state, Long.parseLong(fields[2]), fields[5],
+                    Integer.parseInt(fields[3]), Integer.parseInt(fields[4]), false);
+            }
+        }
+        
+        switch (type) {
+            case "SWIM_PING":
+                sendSwim("SWIM_ACK", seq, from, -1);
+                break;
                 
-                // Se não temos coordenador e o novo servidor é coordenador
-                if (coordinatorId == -1 && senderIsCoord) {
-                    coordinatorId = senderId;
-                    updateCoordLabel();
-                    
-                    // Solicitar estado atual se houver jogo ativo
-                    requestStateSync();
+            case "SWIM_PING_REQ":
+                SwimMember member;
+                long relaySeq;
+                synchronized (swimLock) {
+                    member = swimMembers.get(target);
+                    if (member == null) return;
+                    relaySeq = ++swimSeq;
+                    relayedProbes.put(relaySeq, new RelayedProbe(from, seq, target));
                 }
+                sendSwim("SWIM_PING", relaySeq, member.address(), -1);
+                break;
                 
-                updateServerCount();
-            } else {
-                info.lastSeen = System.currentTimeMillis();
+            case "SWIM_ACK":
+                RelayedProbe relay;
+                double probeRtt = -1;
+                synchronized (swimLock) {
+                    if (seq == probeSeq && (fromId == probeTarget || target == probeTarget)) {
+                        if (!probeAcked && fromId == probeTarget) {
+                            probeRtt = (System.nanoTime() - probeSentAt) / 1e6;
+                        }
+                        probeAcked = true;
+                    }
+                    relay = relayedProbes.remove(seq);
+                }
+                if (probeRtt >= 0) {
+                    // ACK direto: amostra de RTT com o membro (sem SRV_PING entre seguidores)
+                    peerRtt.computeIfAbsent(fromId, k -> new RttEstimator()).sample(probeRtt);
+                }
+                if (relay != null) {
+                    // ACK de uma sonda indireta: repassar ao solicitante com o seq original
+                    sendSwim("SWIM_ACK", relay.seq, relay.requester, relay.targetId);
+                }
+                break;
+        }
+    }
+    
+    // Aplica um update de membership com as regras de precedência por encarnação do SWIM.
+    private void applySwimUpdate(int id, int state, long incarnation, String host,
+                                 int memberClientPort, int memberServerPort, boolean direct) {
+        if (id == serverId) {
+            // Alguém nos considera suspeitos ou mortos: refutar com encarnação maior
+            synchronized (swimLock) {
+                if (state != SwimMember.ALIVE && incarnation >= swimIncarnation) {
+                    swimIncarnation = incarnation + 1;
+                    gossipQueue.put(serverId, new GossipUpdate("A:" + serverId + ":" + swimIncarnation + ":" +
+                        clientPort + ":" + serverPort + ":-", retransmitLimit()));
+                    log("SWIM: refutando suspeita (encarnação " + swimIncarnation + ")");
+                }
             }
-            
-            // Atualizar status do coordenador
-            if (senderIsCoord && coordinatorId != senderId) {
-                coordinatorId = senderId;
-                isCoordinator = false;
-                updateCoordLabel();
+            return;
+        }
+        
+        boolean joined = false;
+        boolean died = false;
+        SwimMember member;
+        synchronized (swimLock) {
+            long now = System.currentTimeMillis();
+            member = swimMembers.get(id);
+            if (member == null) {
+                if (state == SwimMember.DEAD || host.equals("-")) return;
+                member = new SwimMember(id, host, memberClientPort, memberServerPort, incarnation, state, now);
+                swimMembers.put(id, member);
+                enqueueGossip(member);
+                joined = state != SwimMember.DEAD;
+            } else if (member.overriddenBy(state, incarnation)) {
+                boolean wasDead = member.state == SwimMember.DEAD;
+                member.incarnation = incarnation;
+                member.setState(state, now);
+                if (state == SwimMember.ALIVE && !host.equals("-")) {
+                    member.host = host;
+                    member.clientPort = memberClientPort;
+                    member.serverPort = memberServerPort;
+                }
+                enqueueGossip(member);
+                died = state == SwimMember.DEAD;
+                joined = wasDead && state != SwimMember.DEAD;
+            }
+        }
+        
+        if (joined) {
+            onSwimMemberAlive(member);
+        }
+        if (died) {
+            onSwimMemberDead(id);
+        }
+        if (direct && activeServers.containsKey(id)) {
+            lastHeartbeat.put(id, System.currentTimeMillis());
+        }
+    }
+    
+    // Membro novo (ou que voltou) no SWIM: alimentar activeServers e abrir o link TCP.
+    private void onSwimMemberAlive(SwimMember member) {
+        if (activeServers.containsKey(member.id)) return;
+        activeServers.put(member.id, new ServerInfo(member.id, member.host, member.clientPort, member.serverPort));
+        knownMembers.add(member.id);
+        heartbeatReceived(member.id); // também encerra uma falha declarada (falso positivo)
+        log("SWIM: servidor #" + member.id + " entrou no cluster (" + member.host + ")");
+        connectToServer(member.id, member.host, member.serverPort);
+        updateServerCount();
+    }
+    
+    private void onSwimMemberDead(int id) {
+        if (!activeServers.containsKey(id)) return;
+        log("SWIM: servidor #" + id + " confirmado como falho");
+        declaredFailedAt.put(id, System.currentTimeMillis());
+        handleServerFailure(id);
+    }
+    
+    private void enqueueGossip(SwimMember member) {
+        gossipQueue.put(member.id, new GossipUpdate(member.encode(), retransmitLimit()));
+    }
+    
+    // Cada update é retransmitido ~λ·log(n) vezes antes de sair da fila.
+    private int retransmitLimit() {
+        int n = swimMembers.size() + 1;
+        return SWIM_RETRANSMIT_MULTIPLIER * Math.max(1, (int) Math.ceil(Math.log(n + 1) / Math.log(2)));
+    }
+    
+    private String takeGossip() {
+        if (gossipQueue.isEmpty()) return "-";
+        List<Map.Entry<Integer, GossipUpdate>> pending = new ArrayList<>(gossipQueue.entrySet());
+        pending.sort((a, b) -> Integer.compare(b.getValue().remaining, a.getValue().remaining));
+        
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Integer, GossipUpdate> entry : pending.subList(0, Math.min(SWIM_MAX_PIGGYBACK, pending.size()))) {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(entry.getValue().text);
+            if (--entry.getValue().remaining <= 0) {
+                gossipQueue.remove(entry.getKey());
+            }
+        }
+        return sb.toString();
+    }
+    
+    private void sendSwim(String type, long seq, InetSocketAddress to, int target) {
+        if (swimSocket == null) return;
+        String gossip;
+        long incarnation;
+        synchronized (swimLock) {
+            gossip = takeGossip();
+            incarnation = swimIncarnation;
+        }
+        String load = Math.min(clients.size(), Short.MAX_VALUE) + ":" + CAPACITY + ":" + outboundQueue.get() +
+            ":" + cpuLoadPermille() + ":" + activeRooms() + ":" + (controlSender != null ? controlSender.lastSeq() : 0);
+        byte[] data = (type + "|" + seq + "|" + serverId + "|" + incarnation + "|" + clientPort + "|" +
+            serverPort + "|" + target + "|" + load + "|" + gossip).getBytes(StandardCharsets.UTF_8);
+        try {
+            swimSocket.send(new DatagramPacket(data, data.length, to));
+        } catch (IOException e) {
+            if (running) {
+                log("Erro enviando " + type + ": " + e.getMessage());
+            }
+        }
+    }
+    
+    // ==================== MULTICAST CONFIÁVEL ====================
+    
+    private void sendControlMulticast(String message) throws IOException {
+        if (controlSender == null) {
+            throw new IOException("grupo multicast ainda não configurado");
+        }
+        controlSender.send(multicastSocket, message, Integer.MAX_VALUE);
+    }
+    
+    private void handleReliableFrame(String message, InetSocketAddress from) {
+        String[] parts = message.split("\\|", 6); // RM|emissor|fluxo|época|seq|payload
+        int senderId = Integer.parseInt(parts[1]);
+        if (senderId == serverId) return;
+        
+        ReliableMulticastReceiver receiver = controlReceivers.computeIfAbsent(senderId,
+            k -> new ReliableMulticastReceiver());
+        long epoch = Long.parseLong(parts[3]);
+        if (!receiver.matchesEpoch(epoch)) {
+            // Emissor reiniciado: a numeração recomeçou
+            receiver = new ReliableMulticastReceiver();
+            receiver.matchesEpoch(epoch);
+            controlReceivers.put(senderId, receiver);
+        }
+        List<String> delivered = receiver.receive(Long.parseLong(parts[4]), parts[5]);
+        long repairMillis = receiver.takeRepairMillis();
+        if (repairMillis >= 0) {
+            repairLatency.record(repairMillis * 1_000_000L);
+            log("Multicast: lacuna de #" + senderId + " reparada em " + repairMillis + " ms (" +
+                receiver.lostCount() + " perdidos no total, reparos: " + repairLatency + ")");
+        }
+        for (String payload : delivered) {
+            processMulticastMessage(payload, from);
+        }
+        ServerInfo info = activeServers.get(senderId);
+        if (info != null) {
+            sendNackIfDue(senderId, parts[2], receiver, info.repairAddress);
+        }
+    }
+    
+    // NACK pela porta de reparo do emissor; o RM_LOST volta para o nosso socket SWIM.
+    private void sendNackIfDue(int senderId, String stream, ReliableMulticastReceiver receiver,
+                               InetSocketAddress repairAddress) {
+        DatagramSocket socket = swimSocket;
+        if (repairAddress == null || socket == null) return;
+        long[] missing = receiver.nackDue(System.currentTimeMillis());
+        if (missing == null) return;
+        byte[] data = ("RM_NACK|" + senderId + "|" + stream + "|" + missing[0] + "|" + missing[1])
+            .getBytes(StandardCharsets.UTF_8);
+        try {
+            socket.send(new DatagramPacket(data, data.length, repairAddress));
+        } catch (IOException e) {
+            log("Erro enviando NACK: " + e.getMessage());
+        }
+    }
+    
+    // RM_NACK de um receptor ou RM_LOST de um emissor, recebidos na porta de reparo.
+    private void handleRepairMessage(String message, InetSocketAddress from) {
+        String[] parts = message.split("\\|");
+        if (parts[0].equals("RM_NACK")) {
+            // Retransmitir do buffer (para o grupo); o que já saiu do buffer vira RM_LOST
+            if (Integer.parseInt(parts[1]) != serverId || multicastSocket == null) return;
+            ReliableMulticastSender sender = parts[2].equals("R") ? roomSender : controlSender;
+            if (sender != null) {
+                sender.retransmit(multicastSocket, Long.parseLong(parts[3]), Long.parseLong(parts[4]), from);
+            }
+        } else if (parts[0].equals("RM_LOST")) {
+            // Quadros que já saíram do buffer do emissor: seguir adiante
+            ReliableMulticastReceiver receiver = controlReceivers.get(Integer.parseInt(parts[1]));
+            if (receiver != null) {
+                for (String payload : receiver.skipTo(Long.parseLong(parts[3]))) {
+                    processMulticastMessage(payload, from);
+                }
             }
-        } else if (parts[0].equals("STATE_REQUEST")) {
+        }
+    }
+    
+    private void processMulticastMessage(String message, InetSocketAddress from) {
+        if (message.startsWith("RM|")) {
+            handleReliableFrame(message, from);
+            return;
+        }
+        String[] parts = message.split("\\|");
+        
+        if (parts[0].equals("STATE_REQUEST")) {
             int requesterId = Integer.parseInt(parts[1]);
-            updateClock(Integer.parseInt(parts[2]));
+            updateClock(Long.parseLong(parts[2]));
+            long sinceSeq = parts.length > 3 ? Long.parseLong(parts[3]) : -1;
+            long sinceTerm = parts.length > 4 ? Long.parseLong(parts[4]) : -1;
             if (isCoordinator) {
-                sendStateSyncTo(requesterId);
+                sendStateSyncTo(requesterId, sinceSeq, sinceTerm);
             }
         } else if (parts[0].equals("COORDINATOR_ANNOUNCE")) {
             int newCoordId = Integer.parseInt(parts[1]);
-            int clock = Integer.parseInt(parts[2]);
-            updateClock(clock);
-            coordinatorId = newCoordId;
-            isCoordinator = (newCoordId == serverId);
-            updateCoordLabel();
-            log("Coordenador anunciado via Multicast: #" + newCoordId);
+            updateClock(Long.parseLong(parts[2]));
+            if (acceptCoordinator(newCoordId, Long.parseLong(parts[3]))) {
+                log("Coordenador anunciado via Multicast: #" + newCoordId);
+            }
         }
     }
     
     private void requestStateSync() {
         if (coordinatorId != -1 && coordinatorId != serverId) {
+            lastResyncRequest = System.currentTimeMillis();
+            incrementClock();
+            // Enviar o último seq aplicado e o mandato que o gerou: o coordenador responde
+            // só com o delta se o seu log tiver esse mesmo evento (senão, snapshot completo)
+            String message = "STATE_REQUEST|" + serverId + "|" + hlcClock + "|" + 
+                replicationSeq + "|" + replicationTerm;
+            
+            // Preferir o canal TCP com o coordenador; multicast só se ainda não houver conexão
+            ServerConnection conn = servers.get(coordinatorId);
+            if (conn != null) {
+                conn.sendMessage(message);
+                log("Solicitando delta ao coordenador #" + coordinatorId +
+                    " (seq local: " + replicationSeq + ")");
+                return;
+            }
+            
             try {
-                incrementClock();
-                String message = "STATE_REQUEST|" + serverId + "|" + lamportClock;
-                byte[] buffer = message.getBytes();
-                DatagramPacket packet = new DatagramPacket(
-                    buffer, buffer.length, multicastGroup, MULTICAST_PORT);
-                multicastSocket.send(packet);
-                log("Solicitando sincronização de estado do coordenador #" + coordinatorId);
+                sendControlMulticast(message);
+                log("Solicitando sincronização de estado do coordenador #" + coordinatorId +
+                    " (seq local: " + replicationSeq + ")");
             } catch (IOException e) {
                 log("Erro solicitando estado: " + e.getMessage());
             }
         }
     }
     
-    private void sendStateSyncTo(int targetId) {
+    private void sendStateSyncTo(int targetId, long sinceSeq, long sinceTerm) {
         ServerConnection conn = servers.get(targetId);
         if (conn != null) {
             incrementClock();
             
-            // Enviar estado do jogo
-            String gameState = String.format("STATE_SYNC|%b|%d|%d",
-                gameActive, currentQuestionIndex, lamportClock);
-            conn.sendMessage(gameState);
+            // Delta: se o log retido ainda cobre o seq do solicitante (com o mesmo mandato),
+            // enviar só os eventos posteriores
+            List<WalEntry> delta = sinceSeq >= 0 ? retainedSince(sinceSeq, sinceTerm) : null;
+            if (delta != null) {
+                List<String> frames = new ArrayList<>(delta.size());
+                for (WalEntry entry : delta) {
+                    frames.add("REPLICATE|" + entry.action + "|" + entry.data + "|" + 
+                        hlcClock + "|" + entry.seq + "|" + currentTerm + "|" + entry.term);
+                }
+                conn.sendMessages(frames);
+                log("Delta sincronizado para servidor #" + targetId + ": " + delta.size() + 
+                    " eventos após seq " + sinceSeq);
+                return;
+            }
             
-            // Enviar scoreboard
-            for (Map.Entry<String, Integer> entry : globalScoreboard.entrySet()) {
-                conn.sendMessage("SCORE_SYNC|" + entry.getKey() + "|" + entry.getValue());
+            // Estado completo: snapshot binário comprimido, enviado em blocos com um único flush
+            long start = System.currentTimeMillis();
+            GameSnapshot snapshot;
+            synchronized (persistenceLock) {
+                snapshot = captureSnapshot();
             }
+            List<String> frames = encodeStateTransfer(snapshot, 
+                System.nanoTime(), hlcClock, currentTerm);
+            conn.sendMessages(frames);
             
-            log("Estado sincronizado para servidor #" + targetId);
+            log("Estado sincronizado para servidor #" + targetId + ": " + 
+                snapshot.scoreboard.size() + " jogadores em " + (frames.size() - 2) + 
+                " blocos (" + (System.currentTimeMillis() - start) + " ms)");
         }
     }
     
@@ -524,8 +1425,16 @@ public class DistributedQuizServer extends JFrame {
             try {
                 clientListener = new ServerSocket(clientPort);
                 log("Escutando clientes na porta " + clientPort);
+                boolean throttling = false;
                 while (running) {
                     Socket socket = clientListener.accept();
+                    // Admissão ritmada: em uma onda de reconexões os clientes excedentes
+                    // aguardam no accept em vez de disputarem CPU e rede de uma vez
+                    long waited = admissionBucket.acquire();
+                    if (waited > 0 && !throttling) {
+                        log("Onda de conexões: admitindo clientes a " + (int) ADMISSION_RATE + "/s");
+                    }
+                    throttling = waited > 0;
                     ClientHandler handler = new ClientHandler(socket);
                     new Thread(handler).start();
                 }
@@ -533,6 +1442,8 @@ public class DistributedQuizServer extends JFrame {
                 if (running) {
                     log("Erro no listener de clientes: " + e.getMessage());
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
         }, "ClientListener").start();
         
@@ -571,6 +1482,7 @@ public class DistributedQuizServer extends JFrame {
                     new Thread(conn).start();
                     
                     log("Servidor #" + otherId + " identificado e conectado");
+                    onServerConnected(otherId);
                 }
             } catch (IOException e) {
                 log("Erro processando conexão de servidor: " + e.getMessage());
@@ -596,6 +1508,7 @@ public class DistributedQuizServer extends JFrame {
                 new Thread(conn).start();
                 
                 log("Conectado ao servidor #" + otherId);
+                onServerConnected(otherId);
                 
             } catch (Exception e) {
                 log("Erro conectando ao servidor #" + otherId + ": " + e.getMessage());
@@ -603,91 +1516,345 @@ public class DistributedQuizServer extends JFrame {
         }).start();
     }
     
+    private void onServerConnected(int otherId) {
+        // (Re)conexão com o coordenador: recuperar o que foi perdido durante a queda do link
+        if (otherId == coordinatorId && !isCoordinator) {
+            requestStateSync();
+        }
+    }
+    
     // ==================== ELEIÇÃO BULLY ====================
     
+    // Máquina de estados: IDLE -> WAITING_OK (ELECTION enviado aos IDs maiores)
+    //   -> sem OK no timeout: torna-se coordenador
+    //   -> OK recebido: WAITING_COORDINATOR -> sem COORDINATOR no timeout: nova eleição
     private void startElection() {
+        List<Integer> higher = new ArrayList<>();
+        int round;
+        long okTimeout;
+        
+        // Liderança estável: não disputar o cargo de um coordenador saudável
+        if (isCoordinatorHealthy()) {
+            log("Coordenador #" + coordinatorId + " ativo (termo " + currentTerm + "), eleição desnecessária");
+            return;
+        }
+        
         // Correção 1: Prevenir race condition na eleição
         synchronized (electionLock) {
-            if (electionInProgress) {
+            if (electionState != ElectionState.IDLE) {
                 log("Eleição já em andamento, ignorando nova solicitação");
                 return;
             }
-            electionInProgress = true;
-        }
-        
-        try {
-            log("=== INICIANDO ELEIÇÃO BULLY ===");
-            incrementClock();
             
-            boolean sentElection = false;
             for (Integer otherId : activeServers.keySet()) {
                 if (otherId > serverId) {
-                    sendToServer(otherId, "ELECTION|" + serverId + "|" + lamportClock);
-                    sentElection = true;
+                    higher.add(otherId);
                 }
             }
-            
-            if (!sentElection) {
+            if (higher.isEmpty()) {
                 // Sou o maior ID ativo
-                becomeCoordinator();
+                electionState = ElectionState.IDLE;
+                round = -1;
+                okTimeout = 0;
             } else {
-                // Aguardar resposta OK por 3 segundos
-                new Thread(() -> {
-                    try {
-                        Thread.sleep(3000);
-                        synchronized (electionLock) {
-                            if (!isCoordinator && (coordinatorId == -1 || coordinatorId == serverId)) {
-                                becomeCoordinator();
-                            }
-                            electionInProgress = false;
-                        }
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                }).start();
-            }
-        } finally {
-            if (!electionInProgress) {
-                // Já resolvido no bloco acima
+                electionState = ElectionState.WAITING_OK;
+                round = ++electionRound;
+                okTimeout = electionTimeoutFor(higher);
+                scheduleElectionTimeout(round, okTimeout);
             }
         }
-    }
+        
+        log("=== INICIANDO ELEIÇÃO BULLY ===");
+        if (higher.isEmpty()) {
+            becomeCoordinator();
+            return;
+        }
+        
+        incrementClock();
+        for (Integer otherId : higher) {
+            sendToServer(otherId, "ELECTION|" + serverId + "|" + hlcClock);
+        }
+        log("ELECTION enviado a " + higher + ", aguardando OK por " + okTimeout + " ms");
+    }
+    
+    // Timeout de resposta: o maior RTO (srtt + 4*rttvar) entre os servidores consultados.
+    private long electionTimeoutFor(List<Integer> peers) {
+        long timeout = RttEstimator.MIN_RTO;
+        for (Integer peer : peers) {
+            RttEstimator rtt = peerRtt.get(peer);
+            timeout = Math.max(timeout, rtt != null ? rtt.rto() : RttEstimator.INITIAL_RTO);
+        }
+        return timeout;
+    }
+    
+    private void scheduleElectionTimeout(int round, long delay) {
+        if (electionTimeout != null) {
+            electionTimeout.cancel();
+        }
+        electionTimeout = new TimerTask() {
+            @Override
+            public void run() {
+                onElectionTimeout(round);
+            }
+        };
+        electionTimer.schedule(electionTimeout, delay);
+    }
+    
+    private void onElectionTimeout(int round) {
+        ElectionState state;
+        synchronized (electionLock) {
+            if (round != electionRound) return; // timeout de uma rodada já encerrada
+            state = electionState;
+            electionState = ElectionState.IDLE;
+            electionTimeout = null;
+        }
+        
+        if (state == ElectionState.WAITING_OK) {
+            // Nenhum servidor maior respondeu
+            becomeCoordinator();
+        } else if (state == ElectionState.WAITING_COORDINATOR) {
+            log("OK recebido mas nenhum COORDINATOR chegou. Reiniciando eleição...");
+            startElection();
+        }
+    }
+    
+    private void onElectionOk(int fromId) {
+        synchronized (electionLock) {
+            if (electionState != ElectionState.WAITING_OK) return;
+            
+            // Um servidor maior assumiu a eleição: aguardar o anúncio dele. Ele pode
+            // precisar de uma rodada própria para cada nível acima dele.
+            List<Integer> higher = new ArrayList<>();
+            for (Integer otherId : activeServers.keySet()) {
+                if (otherId > serverId) higher.add(otherId);
+            }
+            electionState = ElectionState.WAITING_COORDINATOR;
+            scheduleElectionTimeout(electionRound, electionTimeoutFor(higher) * (higher.size() + 1));
+        }
+        log("Recebi OK do servidor #" + fromId + ", aguardando COORDINATOR");
+    }
+    
+    private void onCoordinatorKnown(int newCoordId) {
+        synchronized (electionLock) {
+            if (electionTimeout != null) {
+                electionTimeout.cancel();
+                electionTimeout = null;
+            }
+            electionState = ElectionState.IDLE;
+            electionRound++;
+        }
+        
+        long since = leaderlessSince;
+        if (since > 0) {
+            leaderlessSince = -1;
+            long elapsed = leaderlessTime.record((System.currentTimeMillis() - since) * 1_000_000L);
+            log("Coordenador #" + newCoordId + " definido após " + elapsed + 
+                " ms sem coordenador (" + leaderlessTime + ")");
+        }
+    }
+    
+    private boolean isCoordinatorHealthy() {
+        int coord = coordinatorId;
+        if (coord == -1) return false;
+        if (coord == serverId) return isCoordinator;
+        Long last = lastHeartbeat.get(coord);
+        return last != null && System.currentTimeMillis() - last < 3 * HEARTBEAT_INTERVAL;
+    }
+    
+    // Termo maior vence, termo menor é ignorado; no mesmo termo vale o maior ID.
+    // Retorna true se o coordenador mudou
+    private boolean acceptCoordinator(int newCoordId, long term) {
+        boolean changed;
+        boolean stepDown;
+        boolean stale = false;
+        
+        // Coordenador que declaramos falho e do qual não veio heartbeat desde então
+        if (newCoordId != serverId && declaredFailedAt.containsKey(newCoordId)) {
+            return false;
+        }
+        
+        synchronized (electionLock) {
+            if (term < currentTerm) {
+                stale = true;
+                changed = false;
+                stepDown = false;
+            } else if (term == currentTerm && coordinatorId != -1 && coordinatorId != newCoordId
+                    && isCoordinatorHealthy() && coordinatorId > newCoordId) {
+                changed = false;
+                stepDown = false;
+            } else {
+                stepDown = isCoordinator && newCoordId != serverId;
+                changed = coordinatorId != newCoordId;
+                currentTerm = term;
+                coordinatorId = newCoordId;
+                isCoordinator = (newCoordId == serverId);
+            }
+        }
+        
+        if (stale) {
+            // Informar o coordenador obsoleto sobre o termo atual
+            if (isCoordinator) {
+                sendToServer(newCoordId, "COORDINATOR|" + serverId + "|" + hlcClock + "|" + currentTerm);
+            }
+            return false;
+        }
+        if (stepDown) {
+            stepDownAsCoordinator(newCoordId);
+        }
+        if (changed) {
+            // Ainda sem heartbeat deste coordenador: monitorá-lo a partir de agora
+            if (!isCoordinator) {
+                lastHeartbeat.putIfAbsent(newCoordId, System.currentTimeMillis());
+            }
+            updateCoordLabel();
+            onCoordinatorKnown(newCoordId);
+            if (!isCoordinator) {
+                requestStateSync();
+            }
+        }
+        return changed;
+    }
+    
+    // ==================== LEASES DE LIDERANÇA ====================
+    
+    private void renewLeases() {
+        String message = "LEASE_RENEW|" + currentTerm + "|" + System.currentTimeMillis() + "|" + System.nanoTime();
+        for (Integer otherId : activeServers.keySet()) {
+            sendToServer(otherId, message);
+        }
+    }
+    
+    // Lease do coordenador: ACKs recentes da maioria e nenhum lease concedido a outro ainda válido.
+    private boolean holdsLease() {
+        if (!isCoordinator) return false;
+        long now = System.currentTimeMillis();
+        if (grantedLeaseTo != serverId && now < grantedLeaseUntil) return false;
+        
+        int acks = 1; // o próprio coordenador
+        for (Integer otherId : knownMembers) {
+            Long sentAt = leaseAcks.get(otherId);
+            if (sentAt != null && now - sentAt < LEASE_DURATION) {
+                acks++;
+            }
+        }
+        int clusterSize = Math.max(CLUSTER_SIZE, knownMembers.size() + 1);
+        return acks > clusterSize / 2;
+    }
+    
+    // Leituras locais (placar) são seguras enquanto houver lease válido.
+    private boolean canServeLocalReads() {
+        if (isCoordinator) return holdsLease();
+        return grantedLeaseTo == coordinatorId && System.currentTimeMillis() < grantedLeaseUntil;
+    }
+    
+    // Ações do coordenador visíveis aos clientes só rodam com lease válido;
+    // sem lease, a ação é adiada (nunca duplicada) até o lease voltar, o termo mudar
+    // ou esgotarem as tentativas (sem maioria por 2 leases, outro coordenador assume)
+    private void runAsLeaseholder(String description, Runnable action) {
+        runAsLeaseholder(description, action, currentTerm, 0);
+    }
+    
+    private void runAsLeaseholder(String description, Runnable action, long term, int attempt) {
+        if (!isCoordinator || currentTerm != term) {
+            if (attempt > 0) {
+                log("Ação descartada (" + description + "): coordenação do termo " + term + " encerrada");
+            }
+            return;
+        }
+        if (holdsLease()) {
+            action.run();
+            return;
+        }
+        if (attempt >= LEASE_MAX_RETRIES) {
+            log("Ação descartada (" + description + "): sem lease há " + 
+                (attempt * LEASE_RETRY_INTERVAL) + " ms");
+            return;
+        }
+        electionTimer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                runAsLeaseholder(description, action, term, attempt + 1);
+            }
+        }, LEASE_RETRY_INTERVAL);
+    }
+    
+    private void handleLeaseRenew(int fromId, long term, String sentAt, String pingNanos) {
+        if (term < currentTerm) return; // coordenador obsoleto: sem ACK
+        lastHeartbeat.put(fromId, System.currentTimeMillis()); // contato direto com o coordenador
+        acceptCoordinator(fromId, term);
+        if (coordinatorId != fromId) return;
+        
+        // Lease ainda válido para o coordenador anterior: ACK só depois que expirar
+        // (a resposta segue mesmo assim, pois também é o pong de relógio/RTT)
+        long now = System.currentTimeMillis();
+        boolean granted = grantedLeaseTo == fromId || now >= grantedLeaseUntil;
+        if (granted) {
+            grantedLeaseTo = fromId;
+            grantedLeaseUntil = now + LEASE_DURATION;
+        }
+        sendToServer(fromId, "LEASE_ACK|" + term + "|" + sentAt + "|" + pingNanos + "|" + now + "|" +
+            (granted ? 1 : 0));
+    }
+    
+    // Fencing: descarta mensagens de épocas antigas e adota épocas mais novas.
+    private boolean checkEpoch(int fromId, long term, String type) {
+        if (term < currentTerm) {
+            log("Descartando " + type + " de #" + fromId + " (termo " + term + 
+                " < atual " + currentTerm + ")");
+            return false;
+        }
+        if (term > currentTerm) {
+            acceptCoordinator(fromId, term);
+        }
+        return true;
+    }
+    
+    private void stepDownAsCoordinator(int newCoordId) {
+        log("Deixando a coordenação: #" + newCoordId + " lidera o termo " + currentTerm);
+        cancelGameTimers();
+        SwingUtilities.invokeLater(() -> startGameButton.setEnabled(false));
+    }
     
     private void becomeCoordinator() {
         log(">>> ME TORNEI COORDENADOR <<<");
-        isCoordinator = true;
-        coordinatorId = serverId;
+        synchronized (electionLock) {
+            currentTerm++;
+            isCoordinator = true;
+            coordinatorId = serverId;
+        }
         updateCoordLabel();
+        leaseAcks.clear();
         
         // Marcar eleição como concluída
-        synchronized (electionLock) {
-            electionInProgress = false;
-        }
+        onCoordinatorKnown(serverId);
+        announceCoordinator();
+        
+        SwingUtilities.invokeLater(() -> {
+            startGameButton.setEnabled(clusterPlayerCount() > 0 && !gameActive);
+        });
         
+        // Retomar jogo se estava ativo quando assumimos coordenação (assim que o
+        // lease for obtido e o lease concedido ao coordenador anterior expirar)
+        runAsLeaseholder("retomar jogo", this::resumeGameAsNewCoordinator);
+    }
+    
+    private void announceCoordinator() {
         // Anunciar via Multicast
         try {
             incrementClock();
-            String message = "COORDINATOR_ANNOUNCE|" + serverId + "|" + lamportClock;
-            byte[] buffer = message.getBytes();
-            DatagramPacket packet = new DatagramPacket(
-                buffer, buffer.length, multicastGroup, MULTICAST_PORT);
-            multicastSocket.send(packet);
-            log("Coordenador anunciado via Multicast");
+            String message = "COORDINATOR_ANNOUNCE|" + serverId + "|" + hlcClock + "|" + currentTerm;
+            sendControlMulticast(message);
+            log("Coordenador anunciado via Multicast (termo " + currentTerm + ")");
         } catch (IOException e) {
             log("Erro anunciando coordenador: " + e.getMessage());
         }
         
         // Enviar para servidores via TCP também
         for (Integer otherId : activeServers.keySet()) {
-            sendToServer(otherId, "COORDINATOR|" + serverId + "|" + lamportClock);
+            sendToServer(otherId, "COORDINATOR|" + serverId + "|" + hlcClock + "|" + currentTerm);
         }
         
-        SwingUtilities.invokeLater(() -> {
-            startGameButton.setEnabled(clients.size() > 0 && !gameActive);
-        });
-        
-        // Retomar jogo se estava ativo quando assumimos coordenação
-        resumeGameAsNewCoordinator();
+        renewLeases();
     }
     
     private void resumeGameAsNewCoordinator() {
@@ -696,10 +1863,7 @@ public class DistributedQuizServer extends JFrame {
             log("Questão atual: " + currentQuestionIndex);
             
             // Cancelar timer anterior se existir
-            if (currentQuestionTimer != null) {
-                currentQuestionTimer.cancel();
-                currentQuestionTimer = null;
-            }
+            cancelGameTimers();
             
             // Criar novo estado para a questão atual
             currentQuestionState = new QuestionState();
@@ -714,20 +1878,11 @@ public class DistributedQuizServer extends JFrame {
             String questionData = "QUESTION|" + q.question + "|" + 
                                   String.join("|", q.options);
             
-            broadcastToClients(questionData);
+            publishToRoom(questionData);
             log("Questão " + (currentQuestionIndex + 1) + " reenviada aos clientes");
             
             // Reiniciar o timer de 15 segundos para esta questão
-            currentQuestionTimer = new Timer();
-            currentQuestionTimer.schedule(new TimerTask() {
-                @Override
-                public void run() {
-                    if (isCoordinator && gameActive) {
-                        log("Timer expirado - processando respostas da questão " + (currentQuestionIndex + 1));
-                        processQuestionEnd();
-                    }
-                }
-            }, 15000);
+            scheduleQuestionEnd(QUESTION_DURATION);
             
         } else if (gameActive && currentQuestionIndex >= questions.size()) {
             // Se o jogo deveria ter terminado, terminar agora
@@ -736,75 +1891,563 @@ public class DistributedQuizServer extends JFrame {
         }
     }
     
-    // ==================== RICART-AGRAWALA ====================
+    // ==================== TRANSFERÊNCIA DE COORDENAÇÃO ====================
     
-    private void requestCriticalSection(Runnable criticalSection) {
-        new Thread(() -> {
-            try {
-                incrementClock();
-                requestingCS = true;
-                requestTimestamp = lamportClock;
-                replyReceived.clear();
-                
-                log("Solicitando CS com timestamp " + requestTimestamp);
-                
-                // Enviar REQUEST para todos os servidores ativos
-                for (Integer otherId : activeServers.keySet()) {
-                    sendToServer(otherId, "CS_REQUEST|" + serverId + "|" + requestTimestamp);
+    private void promptLeadershipTransfer() {
+        if (!isCoordinator || activeServers.isEmpty()) return;
+        
+        Integer suggested = Collections.max(activeServers.keySet());
+        String choice = JOptionPane.showInputDialog(this,
+            "Transferir coordenação para o servidor (IDs ativos: " + activeServers.keySet() + "):",
+            suggested);
+        if (choice == null || choice.trim().isEmpty()) return;
+        
+        int targetId;
+        try {
+            targetId = Integer.parseInt(choice.trim());
+        } catch (NumberFormatException e) {
+            targetId = -1;
+        }
+        if (!activeServers.containsKey(targetId)) {
+            JOptionPane.showMessageDialog(this,
+                "ID inválido: \"" + choice.trim() + "\". IDs ativos: " + activeServers.keySet(),
+                "Transferir coordenação", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        int target = targetId;
+        new Thread(() -> transferLeadership(target), "Handoff").start();
+    }
+    
+    // Passa a coordenação sem interromper o jogo: drena os timers, envia estado e prazo
+    // da fase atual e só redireciona os clientes após o HANDOFF_ACK
+    private void transferLeadership(int targetId) {
+        ServerInfo target = activeServers.get(targetId);
+        if (!isCoordinator || handoffInProgress || target == null || !servers.containsKey(targetId)) {
+            log("Transferência para #" + targetId + " indisponível");
+            return;
+        }
+        handoffInProgress = true;
+        handoffStartedAt = System.currentTimeMillis();
+        log("=== TRANSFERINDO COORDENAÇÃO PARA #" + targetId + " ===");
+        
+        // 1. Drenar: parar timers do jogo e congelar o prazo da fase atual
+        long now = System.currentTimeMillis();
+        String phase = "IDLE";
+        long remaining = 0;
+        if (gameActive && questionDeadline > 0) {
+            phase = "QUESTION";
+            remaining = Math.max(0, questionDeadline - now);
+        } else if (gameActive && nextQuestionAt > 0) {
+            phase = "PAUSE";
+            remaining = Math.max(0, nextQuestionAt - now);
+        }
+        cancelGameTimers();
+        
+        // 2. Estado completo (placar CRDT, questão, seq) pelo canal em blocos
+        sendStateSyncTo(targetId, -1, -1);
+        
+        // 3. Ceder o cargo: novo termo para o sucessor, este servidor vira seguidor
+        long newTerm;
+        synchronized (electionLock) {
+            newTerm = currentTerm + 1;
+            currentTerm = newTerm;
+            isCoordinator = false;
+            coordinatorId = targetId;
+        }
+        QuestionState state = currentQuestionState;
+        incrementClock();
+        sendToServer(targetId, "HANDOFF|" + newTerm + "|" + hlcClock + "|" + gameActive + "|" +
+            currentQuestionIndex + "|" + phase + "|" + remaining + "|" +
+            encodeAnswers(state));
+        updateCoordLabel();
+        
+        // Sem confirmação: reassumir a coordenação na fase congelada
+        String savedPhase = phase;
+        long savedRemaining = remaining;
+        electionTimer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                if (handoffInProgress) {
+                    handoffInProgress = false;
+                    log("Sucessor #" + targetId + " não confirmou a transferência. Reassumindo...");
+                    reclaimAfterFailedHandoff(savedPhase, savedRemaining);
                 }
-                
-                // Aguardar REPLY de todos
-                int timeout = 0;
-                while (replyReceived.size() < activeServers.size() && timeout < 50) {
-                    Thread.sleep(100);
-                    timeout++;
+            }
+        }, HANDOFF_TIMEOUT);
+    }
+    
+    // HANDOFF sem ACK: volta a coordenar e a fase drenada continua com o prazo que restava
+    private void reclaimAfterFailedHandoff(String phase, long remaining) {
+        synchronized (electionLock) {
+            currentTerm++; // supera o termo oferecido ao sucessor, caso ele tenha assumido
+            isCoordinator = true;
+            coordinatorId = serverId;
+        }
+        log(">>> COORDENAÇÃO REASSUMIDA (termo " + currentTerm + ") <<<");
+        updateCoordLabel();
+        leaseAcks.clear();
+        onCoordinatorKnown(serverId);
+        announceCoordinator();
+        
+        switch (phase) {
+            case "QUESTION":
+                scheduleQuestionEnd(remaining);
+                break;
+            case "PAUSE":
+                scheduleNextQuestion(remaining);
+                break;
+        }
+        SwingUtilities.invokeLater(() -> {
+            startGameButton.setEnabled(clusterPlayerCount() > 0 && !gameActive);
+        });
+    }
+    
+    private void acceptHandoff(int fromId, String[] parts) {
+        long term = Long.parseLong(parts[1]);
+        if (term <= currentTerm) {
+            log("Transferência de #" + fromId + " ignorada (termo " + term + " obsoleto)");
+            return;
+        }
+        
+        synchronized (electionLock) {
+            currentTerm = term;
+            isCoordinator = true;
+            coordinatorId = serverId;
+        }
+        // O coordenador anterior liberou o lease voluntariamente
+        grantedLeaseTo = serverId;
+        grantedLeaseUntil = 0;
+        leaseAcks.clear();
+        leaseAcks.put(fromId, System.currentTimeMillis());
+        
+        gameActive = Boolean.parseBoolean(parts[3]);
+        currentQuestionIndex = Integer.parseInt(parts[4]);
+        long remaining = Long.parseLong(parts[6]);
+        // Revelação reposicionada no relógio local: os tempos de resposta seguem comparáveis
+        QuestionState state = new QuestionState(parts[5].equals("QUESTION")
+            ? System.currentTimeMillis() - (QUESTION_DURATION - remaining) : System.currentTimeMillis());
+        decodeAnswers(parts[7], state);
+        currentQuestionState = state;
+        for (ClientHandler client : clients.values()) {
+            Integer answer = state.pendingAnswers.get(client.getPlayerName());
+            if (answer != null) client.markAnswered(answer);
+        }
+        
+        log(">>> COORDENAÇÃO RECEBIDA DE #" + fromId + " (termo " + term + ") <<<");
+        updateCoordLabel();
+        onCoordinatorKnown(serverId);
+        announceCoordinator();
+        
+        // Continuar a fase exatamente de onde parou (sem reenviar a questão)
+        switch (parts[5]) {
+            case "QUESTION":
+                scheduleQuestionEnd(remaining);
+                break;
+            case "PAUSE":
+                scheduleNextQuestion(remaining);
+                break;
+        }
+        
+        sendToServer(fromId, "HANDOFF_ACK|" + term);
+        SwingUtilities.invokeLater(() -> {
+            startGameButton.setEnabled(clusterPlayerCount() > 0 && !gameActive);
+        });
+    }
+    
+    private void completeHandoff(int targetId) {
+        if (!handoffInProgress) return;
+        handoffInProgress = false;
+        
+        // Os jogadores deste servidor ficam onde estão: como seguidor ele passa
+        // a retransmitir a sala e encaminhar as respostas ao novo coordenador
+        log("Coordenação transferida para #" + targetId + " em " + 
+            (System.currentTimeMillis() - handoffStartedAt) + " ms");
+    }
+    
+    // Respostas como nome(base64):alternativa:ms desde a revelação.
+    private static String encodeAnswers(QuestionState state) {
+        if (state == null || state.pendingAnswers.isEmpty()) return "-";
+        Base64.Encoder encoder = Base64.getEncoder();
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Integer> entry : state.pendingAnswers.entrySet()) {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(encoder.encodeToString(entry.getKey().getBytes(StandardCharsets.UTF_8)))
+              .append(':').append(entry.getValue())
+              .append(':').append(state.answerElapsed.getOrDefault(entry.getKey(), (long) QUESTION_DURATION));
+        }
+        return sb.toString();
+    }
+    
+    private static void decodeAnswers(String encoded, QuestionState state) {
+        if (encoded.equals("-")) return;
+        Base64.Decoder decoder = Base64.getDecoder();
+        for (String item : encoded.split(",")) {
+            String[] fields = item.split(":");
+            String name = new String(decoder.decode(fields[0]), StandardCharsets.UTF_8);
+            state.pendingAnswers.put(name, Integer.parseInt(fields[1]));
+            if (fields.length > 2) {
+                state.answerElapsed.put(name, Long.parseLong(fields[2]));
+            }
+        }
+    }
+    
+    // ==================== REPLICAÇÃO E CONSISTÊNCIA ====================
+    
+    private void replicateGameState(String action, String data) {
+        incrementClock();
+        
+        // O coordenador é o único sequenciador: outros servidores encaminham o evento
+        if (!isCoordinator && coordinatorId != -1 && coordinatorId != serverId) {
+            sendToServer(coordinatorId, "REPLICATE_FWD|" + action + "|" + data + "|" + hlcClock);
+            return;
+        }
+        
+        long seq = appendToWal(action, data);
+        String message = "REPLICATE|" + action + "|" + data + "|" + hlcClock + "|" + seq + "|" + 
+            currentTerm + "|" + currentTerm;
+        
+        for (Integer otherId : activeServers.keySet()) {
+            sendToServer(otherId, message);
+        }
+    }
+    
+    // Placar CRDT: cada servidor só incrementa a própria entrada do contador do jogador
+    // e replica o estado dessa entrada; o merge (máximo por entrada) é comutativo e
+    // idempotente, então não há necessidade de exclusão mútua.
+    private ScoreCounter counterFor(String playerName) {
+        return scoreCounters.computeIfAbsent(playerName, k -> new ScoreCounter());
+    }
+    
+    private int applyScoreDelta(String playerName, int delta) {
+        ScoreCounter counter = counterFor(playerName);
+        int value = counter.add(serverId, delta);
+        globalScoreboard.put(playerName, value);
+        replicateGameState("SCORE_MERGE", counter.encodeEntry(playerName, serverId));
+        return value;
+    }
+    
+    private void mergeScoreEntry(String data) {
+        String playerName = mergeScoreEntry(scoreCounters, data);
+        globalScoreboard.put(playerName, scoreCounters.get(playerName).value());
+    }
+    
+    // Mescla uma entrada replicada no mapa de contadores; devolve o nome do jogador.
+    private static String mergeScoreEntry(Map<String, ScoreCounter> counters, String data) {
+        // Formato: nome:servidor:P:N (o nome pode conter ':')
+        int c3 = data.lastIndexOf(':');
+        int c2 = data.lastIndexOf(':', c3 - 1);
+        int c1 = data.lastIndexOf(':', c2 - 1);
+        String playerName = data.substring(0, c1);
+        ScoreCounter counter = counters.computeIfAbsent(playerName, k -> new ScoreCounter());
+        counter.merge(Integer.parseInt(data.substring(c1 + 1, c2)),
+            Integer.parseInt(data.substring(c2 + 1, c3)), Integer.parseInt(data.substring(c3 + 1)));
+        return playerName;
+    }
+    
+    // Mescla um placar completo (snapshot ou anti-entropy) no mapa de contadores.
+    private static void mergeScoreboard(Map<String, ScoreCounter> counters, Map<String, ScoreCounter> incoming) {
+        for (Map.Entry<String, ScoreCounter> entry : incoming.entrySet()) {
+            counters.computeIfAbsent(entry.getKey(), k -> new ScoreCounter()).mergeAll(entry.getValue());
+        }
+    }
+    
+    // ==================== SNAPSHOT E WRITE-AHEAD LOG ====================
+    
+    private void recoverLocalState() {
+        long start = System.currentTimeMillis();
+        int replayed = 0;
+        
+        synchronized (persistenceLock) {
+            // 1. Carregar último snapshot
+            if (snapshotFile.exists()) {
+                try (DataInputStream in = new DataInputStream(
+                        new BufferedInputStream(new FileInputStream(snapshotFile)))) {
+                    GameSnapshot snapshot = GameSnapshot.readFrom(in);
+                    snapshotSeq = snapshot.seq;
+                    gameActive = snapshot.gameActive;
+                    currentQuestionIndex = snapshot.questionIndex;
+                    scoreCounters.putAll(snapshot.scoreboard);
+                    for (Map.Entry<String, ScoreCounter> entry : snapshot.scoreboard.entrySet()) {
+                        globalScoreboard.put(entry.getKey(), entry.getValue().value());
+                    }
+                    for (Map.Entry<String, String> entry : snapshot.sessions.entrySet()) {
+                        registerSession(entry.getKey(), entry.getValue());
+                    }
+                    replicationSeq = snapshotSeq;
+                    replicationTerm = snapshot.term;
+                } catch (IOException e) {
+                    log("Snapshot ignorado: " + e.getMessage());
                 }
-                
-                if (replyReceived.size() == activeServers.size() || activeServers.isEmpty()) {
-                    log("CS concedida! Executando seção crítica...");
-                    criticalSection.run();
-                } else {
-                    log("Timeout aguardando CS replies (" + 
-                        replyReceived.size() + "/" + activeServers.size() + ")");
-                    // Executar mesmo assim se timeout
-                    criticalSection.run();
+            }
+            
+            // 2. Reaplicar a cauda do WAL
+            List<WalEntry> tail = readWalSince(snapshotSeq);
+            if (tail != null) {
+                for (WalEntry entry : tail) {
+                    handleReplication(entry.action, entry.data);
+                    replicationSeq = entry.seq;
+                    replicationTerm = entry.term;
+                    retain(entry);
+                    replayed++;
                 }
-                
-                requestingCS = false;
-                processQueuedRequests();
-                
-            } catch (InterruptedException e) {
-                log("Erro na CS: " + e.getMessage());
             }
-        }).start();
+            
+            // 3. Reescrever o WAL só com a cauda válida (descarta registro parcial)
+            rewriteWal(tail);
+        }
+        
+        if (replicationSeq > 0) {
+            log("Estado recuperado localmente em " + (System.currentTimeMillis() - start) + " ms " +
+                "(snapshot seq " + snapshotSeq + " + " + replayed + " eventos do WAL)");
+        }
+    }
+    
+    private void startSnapshotting() {
+        snapshotTimer = new Timer(true);
+        snapshotTimer.scheduleAtFixedRate(new TimerTask() {
+            @Override
+            public void run() {
+                writeSnapshot();
+            }
+        }, SNAPSHOT_INTERVAL, SNAPSHOT_INTERVAL);
+    }
+    
+    private void writeSnapshot() {
+        synchronized (persistenceLock) {
+            if (!snapshotDirty && replicationSeq == snapshotSeq && snapshotFile.exists()) return;
+            
+            File tmp = new File(snapshotFile.getPath() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                captureSnapshot().writeTo(out);
+            } catch (IOException e) {
+                log("Erro gravando snapshot: " + e.getMessage());
+                return;
+            }
+            
+            try {
+                Files.move(tmp.toPath(), snapshotFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                log("Erro substituindo snapshot: " + e.getMessage());
+                return;
+            }
+            
+            // Compactação: tudo até replicationSeq está no snapshot
+            snapshotSeq = replicationSeq;
+            snapshotDirty = false;
+            rewriteWal(null);
+        }
+    }
+    
+    private GameSnapshot captureSnapshot() {
+        Map<String, ScoreCounter> board = new HashMap<>(scoreCounters.size() * 2);
+        for (Map.Entry<String, ScoreCounter> entry : scoreCounters.entrySet()) {
+            board.put(entry.getKey(), entry.getValue().copy());
+        }
+        Map<String, String> tokens = new HashMap<>(sessions.size() * 2);
+        for (Session session : sessions.values()) {
+            tokens.put(session.token, session.playerName);
+        }
+        return new GameSnapshot(replicationSeq, replicationTerm, gameActive, currentQuestionIndex, board, tokens);
+    }
+    
+    private void applyStateSnapshot(GameSnapshot snapshot) {
+        // Aplicação atômica: o placar só é alterado depois de todo o estado ser validado;
+        // como é um CRDT, o estado recebido é mesclado (nunca perde incrementos locais)
+        synchronized (scoreboardLock) {
+            mergeScoreboard(scoreCounters, snapshot.scoreboard);
+            for (String playerName : snapshot.scoreboard.keySet()) {
+                globalScoreboard.put(playerName, scoreCounters.get(playerName).value());
+            }
+            gameActive = snapshot.gameActive;
+            currentQuestionIndex = snapshot.questionIndex;
+        }
+        for (Map.Entry<String, String> entry : snapshot.sessions.entrySet()) {
+            registerSession(entry.getKey(), entry.getValue());
+        }
+        
+        // Estado completo recebido: o WAL local passa a começar neste seq
+        synchronized (persistenceLock) {
+            replicationSeq = snapshot.seq;
+            replicationTerm = snapshot.term;
+            snapshotSeq = snapshot.seq;
+            snapshotDirty = true;
+            retainedLog.clear();
+            rewriteWal(null);
+        }
+        log("Estado do jogo sincronizado: " + snapshot.scoreboard.size() + 
+            " jogadores (seq " + snapshot.seq + ")");
+    }
+    
+    // Serializa o snapshot em quadros SYNC_BEGIN / SYNC_CHUNK* / SYNC_END.
+    private static List<String> encodeStateTransfer(GameSnapshot snapshot, long transferId, long clock,
+                                                    long term) {
+        byte[] raw;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            snapshot.writeTo(out);
+            out.flush();
+            raw = bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        
+        CRC32 crc = new CRC32();
+        crc.update(raw);
+        
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 4 + 64);
+        byte[] buffer = new byte[SYNC_CHUNK_SIZE];
+        while (!deflater.finished()) {
+            compressed.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+        byte[] payload = compressed.toByteArray();
+        
+        int chunks = (payload.length + SYNC_CHUNK_SIZE - 1) / SYNC_CHUNK_SIZE;
+        List<String> frames = new ArrayList<>(chunks + 2);
+        frames.add("SYNC_BEGIN|" + transferId + "|" + raw.length + "|" + payload.length + 
+            "|" + chunks + "|" + crc.getValue() + "|" + clock + "|" + term);
+        Base64.Encoder encoder = Base64.getEncoder();
+        for (int i = 0; i < chunks; i++) {
+            int from = i * SYNC_CHUNK_SIZE;
+            int to = Math.min(payload.length, from + SYNC_CHUNK_SIZE);
+            frames.add("SYNC_CHUNK|" + transferId + "|" + i + "|" + 
+                encoder.encodeToString(Arrays.copyOfRange(payload, from, to)));
+        }
+        frames.add("SYNC_END|" + transferId);
+        return frames;
+    }
+    
+    private long appendToWal(String action, String data) {
+        synchronized (persistenceLock) {
+            long seq = replicationSeq + 1;
+            appendToWal(seq, currentTerm, action, data);
+            return seq;
+        }
+    }
+    
+    private void appendToWal(long seq, long term, String action, String data) {
+        boolean compact;
+        synchronized (persistenceLock) {
+            replicationSeq = seq;
+            replicationTerm = term;
+            retain(new WalEntry(seq, term, action, data));
+            try {
+                if (walOut == null) {
+                    boolean fresh = walFile.length() == 0;
+                    walOut = new DataOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(walFile, true)));
+                    if (fresh) writeWalHeader(walOut);
+                }
+                walOut.writeLong(seq);
+                walOut.writeLong(term);
+                walOut.writeUTF(action);
+                walOut.writeUTF(data);
+                walOut.flush();
+                walEntries++;
+            } catch (IOException e) {
+                log("Erro gravando WAL: " + e.getMessage());
+            }
+            compact = walEntries >= SNAPSHOT_MAX_WAL_ENTRIES;
+        }
+        if (compact) {
+            writeSnapshot();
+        }
     }
     
-    private void processQueuedRequests() {
-        synchronized (requestQueue) {
-            while (!requestQueue.isEmpty()) {
-                MutexRequest req = requestQueue.poll();
-                sendToServer(req.senderId, "CS_REPLY|" + serverId + "|" + lamportClock);
-            }
+    private void retain(WalEntry entry) {
+        retainedLog.addLast(entry);
+        if (retainedLog.size() > RETAINED_LOG_SIZE) {
+            retainedLog.removeFirst();
         }
     }
     
-    // ==================== REPLICAÇÃO E CONSISTÊNCIA ====================
+    // Eventos retidos com seq > sinceSeq, ou null se a lacuna é antiga demais ou se o evento
+    // sinceSeq do solicitante veio de outro mandato (histórico divergente: snapshot completo).
+    private List<WalEntry> retainedSince(long sinceSeq, long sinceTerm) {
+        synchronized (persistenceLock) {
+            if (sinceSeq > replicationSeq) return null;
+            if (sinceSeq == replicationSeq) {
+                return replicationTerm == sinceTerm ? new ArrayList<>() : null;
+            }
+            if (retainedLog.isEmpty() || retainedLog.peekFirst().seq > sinceSeq) return null;
+            
+            List<WalEntry> entries = new ArrayList<>();
+            for (WalEntry entry : retainedLog) {
+                if (entry.seq == sinceSeq && entry.term != sinceTerm) return null;
+                if (entry.seq > sinceSeq) {
+                    entries.add(entry);
+                }
+            }
+            return entries;
+        }
+    }
     
-    private void replicateGameState(String action, String data) {
-        incrementClock();
-        String message = "REPLICATE|" + action + "|" + data + "|" + lamportClock;
-        
-        for (Integer otherId : activeServers.keySet()) {
-            sendToServer(otherId, message);
+    // Eventos do WAL com seq > sinceSeq, ou null se o WAL não cobre esse intervalo.
+    private List<WalEntry> readWalSince(long sinceSeq) {
+        synchronized (persistenceLock) {
+            if (sinceSeq < snapshotSeq || sinceSeq > replicationSeq) return null;
+            
+            List<WalEntry> entries = new ArrayList<>();
+            if (!walFile.exists()) return entries;
+            
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(walFile)))) {
+                if (walFile.length() == 0) return entries;
+                if (in.readInt() != WAL_MAGIC || in.readInt() != WAL_VERSION) {
+                    log("WAL em formato desconhecido, descartado");
+                    return null;
+                }
+                while (true) {
+                    long seq = in.readLong();
+                    long term = in.readLong();
+                    String action = in.readUTF();
+                    String data = in.readUTF();
+                    if (seq > sinceSeq) {
+                        entries.add(new WalEntry(seq, term, action, data));
+                    }
+                }
+            } catch (EOFException e) {
+                // Fim do log (ou registro parcial de uma queda durante a escrita)
+            } catch (IOException e) {
+                log("Erro lendo WAL: " + e.getMessage());
+            }
+            return entries;
         }
     }
     
-    private void syncScoreboard(String playerName, int score) {
-        requestCriticalSection(() -> {
-            globalScoreboard.put(playerName, score);
-            log("Placar atualizado: " + playerName + " = " + score);
-            replicateGameState("SCORE_UPDATE", playerName + ":" + score);
-        });
+    private static void writeWalHeader(DataOutputStream out) throws IOException {
+        out.writeInt(WAL_MAGIC);
+        out.writeInt(WAL_VERSION);
+    }
+    
+    private void rewriteWal(List<WalEntry> entries) {
+        synchronized (persistenceLock) {
+            try {
+                if (walOut != null) walOut.close();
+                walOut = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(walFile, false)));
+                writeWalHeader(walOut);
+                walEntries = 0;
+                if (entries != null) {
+                    for (WalEntry entry : entries) {
+                        walOut.writeLong(entry.seq);
+                        walOut.writeLong(entry.term);
+                        walOut.writeUTF(entry.action);
+                        walOut.writeUTF(entry.data);
+                        walEntries++;
+                    }
+                }
+                walOut.flush();
+            } catch (IOException e) {
+                log("Erro compactando WAL: " + e.getMessage());
+            }
+        }
     }
     
     // ==================== COMUNICAÇÃO ENTRE SERVIDORES ====================
@@ -822,6 +2465,107 @@ public class DistributedQuizServer extends JFrame {
         }
     }
     
+    // ==================== JOGADORES EM SEGUIDORES ====================
+    
+    // Coordenador: repassa um quadro da sala aos seguidores, que o publicam aos seus jogadores.
+    private void relayToFollowers(String frame) {
+        if (isCoordinator && !servers.isEmpty()) {
+            broadcastToServers("RELAY|" + currentTerm + "|" + frame);
+        }
+    }
+    
+    private void handleRelay(int fromId, String message) {
+        String[] header = message.split("\\|", 3);
+        if (isCoordinator || !checkEpoch(fromId, Long.parseLong(header[1]), "RELAY")) return;
+        
+        String frame = header[2];
+        if (frame.startsWith("QUESTION|") || frame.startsWith("REVEAL|")) {
+            // Nova questão: liberar os jogadores locais para responder
+            currentQuestionState = new QuestionState();
+            for (ClientHandler client : clients.values()) {
+                client.resetAnswer();
+            }
+        }
+        if (clients.isEmpty() && relayLinks.isEmpty()) return; // relays assinam antes de ter jogadores
+        if (frame.equals("GAME_END")) {
+            broadcastToClients(frame);
+        } else {
+            publishToRoom(frame);
+        }
+    }
+    
+    // Seguidor: enfileira a resposta; um envio por ANSWER_BATCH_INTERVAL leva o lote
+    private void forwardAnswer(String player, int answer, long instant) {
+        forwardQueue.add(Base64.getEncoder().encodeToString(player.getBytes(StandardCharsets.UTF_8)) +
+            ":" + answer + ":" + instant + ":" + currentQuestionIndex);
+        if (forwardScheduled.compareAndSet(false, true)) {
+            scheduleAnswerFlush();
+        }
+    }
+    
+    private void scheduleAnswerFlush() {
+        broadcastTimer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                flushForwardedAnswers();
+            }
+        }, ANSWER_BATCH_INTERVAL);
+    }
+    
+    private void flushForwardedAnswers() {
+        List<String> batch = new ArrayList<>();
+        String item;
+        while ((item = forwardQueue.poll()) != null) {
+            batch.add(item);
+        }
+        
+        if (!batch.isEmpty()) {
+            if (isCoordinator) {
+                // Assumimos a coordenação com respostas ainda na fila: registrar aqui
+                applyAnswerBatch(serverId, batch.toArray(new String[0]));
+            } else {
+                ServerConnection conn = servers.get(coordinatorId);
+                if (conn != null) {
+                    conn.sendMessage("ANSWER_BATCH|" + String.join(",", batch));
+                } else if (gameActive) {
+                    // Coordenador ainda desconhecido/inalcançável: manter o lote
+                    forwardQueue.addAll(batch);
+                    scheduleAnswerFlush();
+                    return;
+                }
+            }
+        }
+        
+        forwardScheduled.set(false);
+        if (!forwardQueue.isEmpty() && forwardScheduled.compareAndSet(false, true)) {
+            scheduleAnswerFlush();
+        }
+    }
+    
+    // Coordenador: registra um lote nome(base64):alternativa:instante:questão.
+    private void applyAnswerBatch(int fromId, String[] items) {
+        QuestionState state = currentQuestionState;
+        if (state == null) return;
+        // Os jogadores do seguidor viram a questão um trajeto (coordenador -> seguidor) depois
+        // da revelação local: descontar esse atraso para não perderem pontos de velocidade
+        ClockOffsetEstimator clock = peerClock.get(fromId);
+        long relayDelay = clock != null && clock.ready() ? Math.round(clock.srtt() / 2) : 0;
+        int recorded = 0;
+        for (String item : items) {
+            String[] fields = item.split(":");
+            if (Integer.parseInt(fields[3]) != currentQuestionIndex) continue; // questão já encerrada
+            long instant = Long.parseLong(fields[2]);
+            state.recordAnswer(
+                new String(Base64.getDecoder().decode(fields[0]), StandardCharsets.UTF_8),
+                Integer.parseInt(fields[1]),
+                fromId == serverId ? instant : toLocalClock(fromId, instant) - relayDelay);
+            recorded++;
+        }
+        if (fromId != serverId) {
+            log("Lote de " + recorded + " respostas encaminhado por #" + fromId);
+        }
+    }
+    
     // ==================== LÓGICA DO JOGO ====================
     
     private void initiateGameStart() {
@@ -846,12 +2590,6 @@ public class DistributedQuizServer extends JFrame {
             return;
         }
         
-        // Cancelar timer anterior se existir
-        if (currentQuestionTimer != null) {
-            currentQuestionTimer.cancel();
-            currentQuestionTimer = null;
-        }
-        
         // Criar novo estado para a questão atual
         currentQuestionState = new QuestionState();
         
@@ -859,70 +2597,147 @@ public class DistributedQuizServer extends JFrame {
         String questionData = "QUESTION|" + q.question + "|" + 
                               String.join("|", q.options);
         
-        broadcastToClients(questionData);
+        // Questão pré-enviada: revelar só com a chave (quem não tem o pacote pede REPAIR)
+        // Replicar antes de publicar: o seguidor já conhece o índice quando seus
+        // jogadores recebem a questão (e eventuais REPAIR)
         replicateGameState("QUESTION", currentQuestionIndex + "");
+        SealedQuestion sealed = prefetchedQuestion;
+        prefetchedQuestion = null;
+        if (sealed != null && sealed.index == currentQuestionIndex) {
+            publishToRoom(sealed.revealFrame());
+        } else {
+            publishToRoom(questionData);
+        }
         
         log("Pergunta " + (currentQuestionIndex + 1) + " enviada aos " + clients.size() + " clientes");
         
         // Timer de 15 segundos
+        scheduleQuestionEnd(QUESTION_DURATION);
+    }
+    
+    private void scheduleQuestionEnd(long delay) {
+        cancelGameTimers();
+        questionDeadline = System.currentTimeMillis() + delay;
         currentQuestionTimer = new Timer();
         currentQuestionTimer.schedule(new TimerTask() {
             @Override
             public void run() {
-                if (isCoordinator) {
-                    processQuestionEnd();
+                if (isCoordinator && gameActive) {
+                    log("Timer expirado - processando respostas da questão " + (currentQuestionIndex + 1));
+                    runAsLeaseholder("fim da questão", () -> processQuestionEnd());
                 }
             }
-        }, 15000);
+        }, delay);
+    }
+    
+    private void scheduleNextQuestion(long delay) {
+        cancelGameTimers();
+        nextQuestionAt = System.currentTimeMillis() + delay;
+        currentQuestionTimer = new Timer();
+        currentQuestionTimer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                runAsLeaseholder("próxima questão", () -> {
+                    currentQuestionIndex++;
+                    sendNextQuestion();
+                });
+            }
+        }, delay);
+    }
+    
+    private void cancelGameTimers() {
+        if (currentQuestionTimer != null) {
+            currentQuestionTimer.cancel();
+            currentQuestionTimer = null;
+        }
+        questionDeadline = 0;
+        nextQuestionAt = 0;
     }
     
     private void processQuestionEnd() {
         Question q = questions.get(currentQuestionIndex);
+        QuestionState state = currentQuestionState;
         
+        // Pontuar pelas respostas registradas no estado da questão (inclui as
+        // recebidas antes de uma transferência de coordenação)
+        if (state != null) {
+            for (Map.Entry<String, Integer> answer : state.pendingAnswers.entrySet()) {
+                if (answer.getValue() == q.correctAnswer) {
+                    updatePlayerScore(answer.getKey(), state.speedPoints(answer.getKey()));
+                }
+            }
+        }
         for (ClientHandler client : clients.values()) {
             if (client.hasAnswered() && client.getLastAnswer() == q.correctAnswer) {
-                int points = 100;
-                client.addPoints(points);
-                // Usar método sincronizado para atualizar scoreboard global
-                updatePlayerScore(client.getPlayerName(), points);
+                client.addPoints(state != null ? state.speedPoints(client.getPlayerName()) : 100);
             }
             client.resetAnswer();
         }
         
         sendScoreboardToClients();
-        
-        new Timer().schedule(new TimerTask() {
-            @Override
-            public void run() {
-                currentQuestionIndex++;
-                sendNextQuestion();
-            }
-        }, 3000);
+        prefetchQuestion(currentQuestionIndex + 1);
+        scheduleNextQuestion(SCOREBOARD_PAUSE);
+    }
+    
+    // Envia a próxima questão cifrada durante a pausa do placar.
+    private void prefetchQuestion(int index) {
+        if (index >= questions.size()) return;
+        Question q = questions.get(index);
+        try {
+            SealedQuestion sealed = SealedQuestion.seal(index,
+                "QUESTION|" + q.question + "|" + String.join("|", q.options));
+            prefetchedQuestion = sealed;
+            publishToRoom(sealed.prefetchFrame());
+        } catch (GeneralSecurityException e) {
+            log("Pré-envio da questão indisponível: " + e.getMessage());
+        }
     }
     
     
     private void updatePlayerScore(String playerName, int pointsToAdd) {
-        synchronized (scoreboardLock) {
-            int currentScore = globalScoreboard.getOrDefault(playerName, 0);
-            int newScore = currentScore + pointsToAdd;
-            globalScoreboard.put(playerName, newScore);
-            // Replicar atualização para outros servidores
-            replicateGameState("SCORE_UPDATE", playerName + ":" + newScore);
-            log("Score atualizado: " + playerName + " = " + newScore + " pontos");
-        }
+        // Incremento local no CRDT; a replicação faz o merge nos demais servidores
+        int newScore = applyScoreDelta(playerName, pointsToAdd);
+        log("Score atualizado: " + playerName + " = " + newScore + " pontos");
     }
     
     private void endGame() {
         gameActive = false;
         broadcastToClients("GAME_END");
+        relayToFollowers("GAME_END");
         replicateGameState("GAME_END", "");
         log("Jogo finalizado!");
         SwingUtilities.invokeLater(() -> {
-            startGameButton.setEnabled(isCoordinator && clients.size() > 0);
+            startGameButton.setEnabled(isCoordinator && clusterPlayerCount() > 0);
         });
     }
     
+    // Publicação agregada: pedidos pendentes são absorvidos, no máximo uma por SCOREBOARD_PUBLISH_INTERVAL
     private void sendScoreboardToClients() {
+        synchronized (publishLock) {
+            if (publishPending) return;
+            publishPending = true;
+            long delay = Math.max(0, lastPublishAt + SCOREBOARD_PUBLISH_INTERVAL - System.currentTimeMillis());
+            broadcastTimer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    flushScoreboard();
+                }
+            }, delay);
+        }
+    }
+    
+    private void flushScoreboard() {
+        synchronized (publishLock) {
+            publishPending = false;
+            lastPublishAt = System.currentTimeMillis();
+        }
+        String board = buildScoreboardMessage();
+        if (board.equals(lastPublishedBoard)) return; // nada mudou
+        lastPublishedBoard = board;
+        publishToRoom(board);
+    }
+    
+    private String buildScoreboardMessage() {
         StringBuilder sb = new StringBuilder("SCOREBOARD");
         
         List<Map.Entry<String, Integer>> sorted = new ArrayList<>(globalScoreboard.entrySet());
@@ -931,31 +2746,100 @@ public class DistributedQuizServer extends JFrame {
         for (Map.Entry<String, Integer> entry : sorted) {
             sb.append("|").append(entry.getKey()).append(":").append(entry.getValue());
         }
-        
-        broadcastToClients(sb.toString());
+        return sb.toString();
+    }
+    
+    // Quadros de estado da sala (QUESTION, SCOREBOARD): com o canal multicast ativo
+    // vão uma única vez no fio, numerados; quem perder um quadro pede REPAIR por TCP.
+    private void publishToRoom(String frame) {
+        relayToFollowers(frame);
+        if (ROOM_MULTICAST && multicastSocket != null && roomSender != null) {
+            try {
+                if (roomSender.send(multicastSocket, frame, ROOM_FRAME_MAX)) {
+                    // Relays podem estar fora do alcance do multicast: cópia por TCP
+                    for (ClientHandler relay : relayLinks.values()) {
+                        relay.sendMessage(frame);
+                    }
+                    return;
+                }
+            } catch (IOException e) {
+                log("Erro no canal da sala, usando TCP: " + e.getMessage());
+            }
+        }
+        broadcastToClients(frame);
+    }
+    
+    private void sendRoomChannel(ClientHandler client) {
+        if (!ROOM_MULTICAST || roomSender == null || client.link != null) return;
+        client.sendMessage("ROOM_CHANNEL|" + serverId + "|" + roomGroup.getHostAddress() + "|" +
+            ROOM_MULTICAST_PORT + "|" + roomSender.lastSeq());
     }
     
     private void broadcastToClients(String message) {
+        // Fila de saída: mensagens deste broadcast ainda não entregues (vai no heartbeat)
+        List<ClientHandler> targets = new ArrayList<>(clients.size() + relayLinks.size());
         for (ClientHandler client : clients.values()) {
+            if (client.link == null) targets.add(client); // jogadores de relay recebem pela cópia do relay
+        }
+        targets.addAll(relayLinks.values());
+        outboundQueue.addAndGet(targets.size());
+        for (ClientHandler client : targets) {
             client.sendMessage(message);
+            outboundQueue.decrementAndGet();
         }
     }
     
-    // ==================== RELÓGIO DE LAMPORT ====================
+    // ==================== RELÓGIO LÓGICO HÍBRIDO ====================
     
+    // Evento local ou envio: l = max(l, pt); o contador lógico só avança quando o
+    // tempo físico não avançou. Na codificação compacta isso é max(hlc + 1, pt << 16).
     private void incrementClock() {
         synchronized (clockLock) {
-            lamportClock++;
+            hlcClock = Math.max(hlcClock + 1, physicalClock());
+            long stamp = hlcClock;
             SwingUtilities.invokeLater(() -> 
-                clockLabel.setText("Relógio Lamport: " + lamportClock));
+                clockLabel.setText("Relógio HLC: " + formatHlc(stamp)));
         }
     }
     
-    private void updateClock(int receivedTime) {
+    // Recebimento: max(local, recebido) + 1, nunca atrás do relógio físico.
+    private void updateClock(long receivedTime) {
+        long drift = (receivedTime >>> HLC_LOGICAL_BITS) - System.currentTimeMillis();
+        if (drift > HLC_MAX_DRIFT && System.currentTimeMillis() - lastDriftWarning > 10000) {
+            lastDriftWarning = System.currentTimeMillis();
+            log("HLC recebido " + drift + " ms à frente do relógio local (" + formatHlc(receivedTime) + ")");
+        }
         synchronized (clockLock) {
-            lamportClock = Math.max(lamportClock, receivedTime) + 1;
+            hlcClock = Math.max(Math.max(hlcClock, receivedTime) + 1, physicalClock());
+            long stamp = hlcClock;
             SwingUtilities.invokeLater(() -> 
-                clockLabel.setText("Relógio Lamport: " + lamportClock));
+                clockLabel.setText("Relógio HLC: " + formatHlc(stamp)));
+        }
+    }
+    
+    // Leitura sem avançar o relógio (logs e métricas).
+    private long currentClock() {
+        synchronized (clockLock) {
+            return Math.max(hlcClock, physicalClock());
+        }
+    }
+    
+    private static long physicalClock() {
+        return System.currentTimeMillis() << HLC_LOGICAL_BITS;
+    }
+    
+    // HLC legível: HH:mm:ss.SSS+contador.
+    private static String formatHlc(long hlc) {
+        return new java.text.SimpleDateFormat("HH:mm:ss.SSS").format(new Date(hlc >>> HLC_LOGICAL_BITS)) +
+            "+" + (hlc & ((1L << HLC_LOGICAL_BITS) - 1));
+    }
+    
+    // Atraso de replicação: tempo físico local menos o físico do carimbo HLC do emissor.
+    private void recordReplicationLag(long stamp) {
+        long lagMillis = Math.max(0, System.currentTimeMillis() - (stamp >>> HLC_LOGICAL_BITS));
+        replicationLag.record(lagMillis * 1_000_000L);
+        if (replicationLag.getCount() % REPLICATION_LAG_REPORT == 0) {
+            log("Atraso de replicação: " + replicationLag);
         }
     }
     
@@ -973,7 +2857,8 @@ public class DistributedQuizServer extends JFrame {
             this.otherId = otherId;
             try {
                 in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-                out = new PrintWriter(socket.getOutputStream(), true);
+                out = new PrintWriter(new BufferedWriter(
+                    new OutputStreamWriter(socket.getOutputStream())), false);
             } catch (IOException e) {
                 log("Erro criando conexão com servidor: " + e.getMessage());
             }
@@ -995,7 +2880,19 @@ public class DistributedQuizServer extends JFrame {
         
         public void sendMessage(String msg) {
             if (out != null && active) {
-                out.println(msg);
+                synchronized (out) {
+                    out.println(msg);
+                    out.flush();
+                }
+            }
+        }
+        
+        // Várias mensagens com um único flush (uma syscall em vez de uma por linha)
+        public void sendMessages(List<String> msgs) {
+            if (out != null && active) {
+                synchronized (out) {
+                    writeLines(out, msgs);
+                }
             }
         }
         
@@ -1009,6 +2906,14 @@ public class DistributedQuizServer extends JFrame {
         }
     }
     
+    // Várias mensagens com um único flush
+    private static void writeLines(PrintWriter out, List<String> lines) {
+        for (String line : lines) {
+            out.println(line);
+        }
+        out.flush();
+    }
+    
     private void processServerMessage(String message, int fromId) {
         String[] parts = message.split("\\|");
         String type = parts[0];
@@ -1016,74 +2921,157 @@ public class DistributedQuizServer extends JFrame {
         switch (type) {
             case "HELLO":
                 int senderId = Integer.parseInt(parts[1]);
-                updateClock(Integer.parseInt(parts[3]));
+                updateClock(Long.parseLong(parts[3]));
                 log("Servidor #" + senderId + " identificado via TCP");
                 break;
                 
             case "ELECTION":
-                updateClock(Integer.parseInt(parts[2]));
+                updateClock(Long.parseLong(parts[2]));
                 int candidateId = Integer.parseInt(parts[1]);
                 if (candidateId < serverId) {
-                    sendToServer(fromId, "OK|" + serverId + "|" + lamportClock);
-                    startElection();
+                    if (isCoordinatorHealthy()) {
+                        // Coordenador ainda ativo: informar em vez de disputar o cargo
+                        sendToServer(fromId, "COORDINATOR|" + coordinatorId + "|" + hlcClock + "|" + currentTerm);
+                    } else {
+                        sendToServer(fromId, "OK|" + serverId + "|" + hlcClock);
+                        startElection();
+                    }
                 }
                 break;
                 
             case "OK":
-                updateClock(Integer.parseInt(parts[2]));
-                log("Recebi OK do servidor #" + fromId);
+                updateClock(Long.parseLong(parts[2]));
+                onElectionOk(fromId);
                 break;
                 
             case "COORDINATOR":
-                updateClock(Integer.parseInt(parts[2]));
-                coordinatorId = Integer.parseInt(parts[1]);
-                isCoordinator = (coordinatorId == serverId);
-                log("Novo coordenador via TCP: #" + coordinatorId);
-                updateCoordLabel();
+                updateClock(Long.parseLong(parts[2]));
+                int announcedId = Integer.parseInt(parts[1]);
+                if (acceptCoordinator(announcedId, Long.parseLong(parts[3]))) {
+                    log("Novo coordenador via TCP: #" + announcedId + " (termo " + currentTerm + ")");
+                }
                 break;
                 
-            case "CS_REQUEST":
-                updateClock(Integer.parseInt(parts[2]));
-                int reqId = Integer.parseInt(parts[1]);
-                int reqTime = Integer.parseInt(parts[2]);
-                
-                if (requestingCS && (reqTime < requestTimestamp || 
-                    (reqTime == requestTimestamp && reqId < serverId))) {
-                    synchronized (requestQueue) {
-                        requestQueue.add(new MutexRequest(reqId, reqTime));
-                    }
-                } else {
-                    sendToServer(reqId, "CS_REPLY|" + serverId + "|" + lamportClock);
-                }
+            case "SRV_PING":
+                sendToServer(fromId, "SRV_PONG|" + parts[1] +
+                    (parts.length > 2 ? "|" + parts[2] + "|" + System.currentTimeMillis() : ""));
                 break;
                 
-            case "CS_REPLY":
-                updateClock(Integer.parseInt(parts[2]));
-                replyReceived.add(fromId);
+            case "SRV_PONG":
+                double pongRtt = (System.nanoTime() - Long.parseLong(parts[1])) / 1e6;
+                peerRtt.computeIfAbsent(fromId, k -> new RttEstimator()).sample(pongRtt);
+                if (parts.length > 3) {
+                    peerClock.computeIfAbsent(fromId, k -> new ClockOffsetEstimator())
+                        .sample(pongRtt, Long.parseLong(parts[2]), Long.parseLong(parts[3]));
+                }
                 break;
                 
             case "REPLICATE":
-                updateClock(Integer.parseInt(parts[3]));
+                updateClock(Long.parseLong(parts[3]));
+                recordReplicationLag(Long.parseLong(parts[3]));
+                if (!checkEpoch(fromId, Long.parseLong(parts[5]), "REPLICATE")) break;
                 String action = parts[1];
                 String data = parts[2];
-                handleReplication(action, data);
+                // Mandato em que o evento foi sequenciado (no delta, pode ser anterior ao atual)
+                long eventTerm = parts.length > 6 ? Long.parseLong(parts[6]) : Long.parseLong(parts[5]);
+                applyReplicatedEvent(Long.parseLong(parts[4]), eventTerm, action, data);
+                break;
+                
+            case "HANDOFF":
+                updateClock(Long.parseLong(parts[2]));
+                acceptHandoff(fromId, parts);
+                break;
+                
+            case "HANDOFF_ACK":
+                completeHandoff(fromId);
+                break;
+                
+            case "ANSWER_BATCH":
+                // Respostas de jogadores conectados a um seguidor
+                if (isCoordinator) {
+                    applyAnswerBatch(fromId, parts[1].split(","));
+                }
+                break;
+                
+            case "RELAY":
+                handleRelay(fromId, message);
+                break;
+                
+            case "LEASE_RENEW":
+                handleLeaseRenew(fromId, Long.parseLong(parts[1]), parts[2], parts[3]);
+                break;
+                
+            case "LEASE_ACK":
+                // Também é o pong do coordenador: RTT e offset do seguidor
+                double leaseRtt = (System.nanoTime() - Long.parseLong(parts[3])) / 1e6;
+                peerRtt.computeIfAbsent(fromId, k -> new RttEstimator()).sample(leaseRtt);
+                peerClock.computeIfAbsent(fromId, k -> new ClockOffsetEstimator())
+                    .sample(leaseRtt, Long.parseLong(parts[2]), Long.parseLong(parts[4]));
+                if (isCoordinator && parts[5].equals("1") && Long.parseLong(parts[1]) == currentTerm) {
+                    leaseAcks.merge(fromId, Long.parseLong(parts[2]), Math::max);
+                }
                 break;
                 
-            case "STATE_SYNC":
-                updateClock(Integer.parseInt(parts[4]));
-                gameActive = Boolean.parseBoolean(parts[1]);
-                currentQuestionIndex = Integer.parseInt(parts[2]);
-                log("Estado do jogo sincronizado");
+            case "STATE_REQUEST":
+                updateClock(Long.parseLong(parts[2]));
+                if (isCoordinator) {
+                    sendStateSyncTo(fromId, Long.parseLong(parts[3]),
+                        parts.length > 4 ? Long.parseLong(parts[4]) : -1);
+                }
+                break;
+                
+            case "REPLICATE_FWD":
+                // Evento originado em outro servidor: aplicar e sequenciar como coordenador
+                updateClock(Long.parseLong(parts[3]));
+                if (isCoordinator) {
+                    handleReplication(parts[1], parts[2]);
+                    replicateGameState(parts[1], parts[2]);
+                }
+                break;
+                
+            case "SYNC_BEGIN":
+                updateClock(Long.parseLong(parts[6]));
+                if (!checkEpoch(fromId, Long.parseLong(parts[7]), "SYNC_BEGIN")) break;
+                incomingTransfers.put(fromId, new StateTransfer(Long.parseLong(parts[1]),
+                    Integer.parseInt(parts[2]), Integer.parseInt(parts[4]), Long.parseLong(parts[5])));
                 break;
                 
-            case "SCORE_SYNC":
-                String playerName = parts[1];
-                int score = Integer.parseInt(parts[2]);
-                globalScoreboard.put(playerName, score);
+            case "SYNC_CHUNK":
+                StateTransfer transfer = incomingTransfers.get(fromId);
+                if (transfer != null && transfer.id == Long.parseLong(parts[1])) {
+                    transfer.addChunk(Integer.parseInt(parts[2]), parts[3]);
+                }
+                break;
+                
+            case "SYNC_END":
+                StateTransfer completed = incomingTransfers.remove(fromId);
+                if (completed != null && completed.id == Long.parseLong(parts[1])) {
+                    try {
+                        applyStateSnapshot(completed.decode());
+                    } catch (IOException e) {
+                        log("Transferência de estado de #" + fromId + " descartada: " + e.getMessage());
+                    }
+                }
                 break;
         }
     }
     
+    private void applyReplicatedEvent(long seq, long term, String action, String data) {
+        // Ignorar eventos duplicados (ex.: delta reenviado após sincronização)
+        if (seq <= replicationSeq) return;
+        
+        // Lacuna na sequência: descartar e pedir o delta (que inclui este evento)
+        if (seq > replicationSeq + 1) {
+            if (System.currentTimeMillis() - lastResyncRequest > RESYNC_RETRY_INTERVAL) {
+                log("Lacuna na replicação (local " + replicationSeq + ", recebido " + seq + ")");
+                requestStateSync();
+            }
+            return;
+        }
+        handleReplication(action, data);
+        appendToWal(seq, term, action, data);
+    }
+    
     private void handleReplication(String action, String data) {
         switch (action) {
             case "GAME_START":
@@ -1097,10 +3085,8 @@ public class DistributedQuizServer extends JFrame {
                 log("Questão replicada: #" + currentQuestionIndex);
                 break;
                 
-            case "SCORE_UPDATE":
-                String[] scoreData = data.split(":");
-                globalScoreboard.put(scoreData[0], Integer.parseInt(scoreData[1]));
-                log("Placar replicado: " + scoreData[0] + " = " + scoreData[1]);
+            case "SCORE_MERGE":
+                mergeScoreEntry(data);
                 break;
                 
             case "GAME_END":
@@ -1109,13 +3095,43 @@ public class DistributedQuizServer extends JFrame {
                 break;
                 
             case "PLAYER_JOIN":
-                if (!globalScoreboard.containsKey(data)) {
-                    globalScoreboard.put(data, 0);
-                }
+                globalScoreboard.putIfAbsent(data, counterFor(data).value());
+                break;
+                
+            case "SESSION":
+                // token:nome (o token não contém ':', o nome pode conter)
+                int sep = data.indexOf(':');
+                registerSession(data.substring(0, sep), data.substring(sep + 1));
                 break;
         }
     }
     
+    // ==================== SESSÕES ====================
+    
+    // Token novo (replicado) a cada JOIN: o anterior deixa de valer, então saber o
+    // nome do jogador não basta para um RESUME ou STANDBY
+    private Session rotateSession(String playerName) {
+        byte[] raw = new byte[16];
+        tokenRandom.nextBytes(raw);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+        Session session = registerSession(token, playerName);
+        replicateGameState("SESSION", token + ":" + playerName);
+        return session;
+    }
+    
+    // Um token por jogador: o último registrado (na ordem da replicação) substitui o anterior
+    private Session registerSession(String token, String playerName) {
+        Session session = new Session(token, playerName);
+        synchronized (sessions) {
+            Session previous = sessionsByName.put(playerName, session);
+            if (previous != null) {
+                sessions.remove(previous.token, previous);
+            }
+            sessions.put(token, session);
+        }
+        return session;
+    }
+    
     private class ClientHandler implements Runnable {
         private Socket socket;
         private BufferedReader in;
@@ -1124,9 +3140,19 @@ public class DistributedQuizServer extends JFrame {
         private int score = 0;
         private boolean answered = false;
         private int lastAnswer = -1;
+        final ClockOffsetEstimator clock = new ClockOffsetEstimator();
         private String clientId;
+        private Session session;
+        private boolean standby = false; // conexão reserva aguardando promoção (RESUME)
+        
+        // Jogador atrás de um relay: sem socket próprio, fala pela conexão do relay
+        final ClientHandler link;
+        private final String relayConnId;
+        private final Map<String, ClientHandler> relayed = new ConcurrentHashMap<>(); // no relay: conexão -> jogador
         
         public ClientHandler(Socket socket) {
+            this.link = null;
+            this.relayConnId = null;
             this.socket = socket;
             this.clientId = socket.getRemoteSocketAddress().toString();
             try {
@@ -1147,61 +3173,112 @@ public class DistributedQuizServer extends JFrame {
             } catch (IOException e) {
                 log("Cliente desconectou: " + playerName);
             } finally {
-                clients.remove(clientId);
-                updatePlayerCount();
+                disconnected();
+            }
+        }
+        
+        // Jogador virtual: as mensagens seguem embrulhadas em TO pela conexão do relay.
+        ClientHandler(ClientHandler link, String connId) {
+            this.link = link;
+            this.relayConnId = connId;
+            this.clientId = link.clientId + "/" + connId;
+        }
+        
+        private void disconnected() {
+            if (relayLinks.remove(clientId, this)) {
+                log("Relay desconectado: " + clientId + " (" + relayed.size() + " jogadores)");
+                for (ClientHandler player : relayed.values()) {
+                    player.disconnected();
+                }
+                relayed.clear();
+            }
+            clients.remove(clientId, this);
+            if (playerName != null) {
+                clientsByName.remove(playerName, this);
             }
+            updatePlayerCount();
         }
         
         private void processClientMessage(String message) {
             String[] parts = message.split("\\|");
             
+            // Reserva ainda não promovida: nada de comandos de jogador antes do RESUME (ou JOIN)
+            if (standby && !parts[0].equals("RESUME") && !parts[0].equals("JOIN") && !parts[0].equals("CLOCK_PONG")) {
+                return;
+            }
+            
             switch (parts[0]) {
-                case "JOIN":
-                    playerName = parts[1];
+                case "STANDBY":
+                    // Conexão reserva: só para uma sessão conhecida (token replicado pelo
+                    // servidor que a emitiu); fica ociosa, fora de 'clients', até ser promovida
+                    Session standbySession = parts.length > 1 ? sessions.get(parts[1]) : null;
+                    if (standbySession == null) {
+                        sendMessage("STANDBY_DENIED");
+                        close();
+                        break;
+                    }
+                    playerName = standbySession.playerName;
+                    standby = true;
+                    sendMessage("STANDBY_OK|" + serverId);
+                    log("Conexão reserva de " + playerName);
+                    break;
                     
-                    // Verificar se já existe um cliente com esse nome conectado
-                    ClientHandler existingClient = null;
-                    for (ClientHandler client : clients.values()) {
-                        if (client != this && playerName.equals(client.getPlayerName())) {
-                            existingClient = client;
-                            break;
-                        }
+                case "RELAY_SUBSCRIBE":
+                    if (link != null) break;
+                    if (!relaySecretMatches(parts.length > 2 ? parts[2] : "")) {
+                        log("Assinatura de relay recusada: " + parts[1] + " (" + clientId + ")");
+                        sendMessage("RELAY_DENIED");
+                        close();
+                        break;
                     }
+                    relayLinks.put(clientId, this);
+                    sendMessage("RELAY_OK|" + serverId);
+                    log("Relay conectado: " + parts[1] + " (" + clientId + ")");
+                    break;
                     
-                    // Se já existe, fechar socket antigo e remover a conexão antiga
-                    if (existingClient != null) {
-                        String oldId = null;
-                        for (Map.Entry<String, ClientHandler> entry : clients.entrySet()) {
-                            if (entry.getValue() == existingClient) {
-                                oldId = entry.getKey();
-                                break;
-                            }
-                        }
-                        if (oldId != null) {
-                            try {
-                                existingClient.socket.close();
-                            } catch (IOException e) {
-                                // Ignora erro ao fechar socket
-                            }
-                            clients.remove(oldId);
-                            log("Conexão anterior de " + playerName + " foi fechada");
-                        }
+                case "RELAYED":
+                    // Mensagem de um jogador do relay: RELAYED|conexão|mensagem original
+                    if (relayLinks.get(clientId) != this) break;
+                    String[] relayedParts = message.split("\\|", 3);
+                    relayed.computeIfAbsent(relayedParts[1], connId -> new ClientHandler(this, connId))
+                        .processClientMessage(relayedParts[2]);
+                    break;
+                    
+                case "RELAY_CLOSED":
+                    ClientHandler gone = relayed.remove(parts[1]);
+                    if (gone != null) {
+                        gone.disconnected();
                     }
+                    break;
                     
-                    clients.put(clientId, this);
-                    sendMessage("JOINED|" + playerName + "|" + serverId);
+                case "JOIN":
+                    if (link == null && redirectIfOverloaded(parts.length > 2 ? Integer.parseInt(parts[2]) : 0)) break;
+                    playerName = parts[1];
+                    standby = false;
+                    
+                    // Se já existe um cliente com esse nome, fechar a conexão antiga
+                    register();
+                    session = rotateSession(playerName);
+                    sendMessage("JOINED|" + playerName + "|" + serverId + "|" + session.token);
+                    sendRoomChannel(this);
                     
                     // Restaurar pontuação se jogador já existia
                     if (globalScoreboard.containsKey(playerName)) {
                         score = globalScoreboard.get(playerName);
                         log("Jogador reconectou: " + playerName + " (Score: " + score + ")");
                     } else {
-                        globalScoreboard.put(playerName, 0);
+                        globalScoreboard.put(playerName, counterFor(playerName).value());
                         log("Novo jogador: " + playerName);
                         // Apenas replicar se for realmente novo
                         replicateGameState("PLAYER_JOIN", playerName);
                     }
                     
+                    // Preservar resposta já dada à questão atual (ex.: após transferência)
+                    QuestionState joinState = currentQuestionState;
+                    if (joinState != null && joinState.pendingAnswers.containsKey(playerName)) {
+                        markAnswered(joinState.pendingAnswers.get(playerName));
+                    }
+                    
                     updatePlayerCount();
                     
                     // Enviar estado atual se jogo ativo
@@ -1212,26 +3289,172 @@ public class DistributedQuizServer extends JFrame {
                         sendMessage(questionData);
                     }
                     
-                    // Enviar scoreboard atual
+                    // Enviar scoreboard atual ao novo jogador; os demais recebem
+                    // o próximo quadro agregado (se o placar mudou)
+                    sendMessage(buildScoreboardMessage());
                     sendScoreboardToClients();
                     break;
                     
+                case "RESUME":
+                    resume(parts[1]);
+                    break;
+                    
+                case "REPAIR":
+                    // Quadro da sala perdido no multicast: reenviar o estado atual por TCP
+                    if (gameActive && !answered && currentQuestionIndex < questions.size()) {
+                        Question q = questions.get(currentQuestionIndex);
+                        sendMessage("QUESTION|" + q.question + "|" + String.join("|", q.options));
+                    }
+                    sendMessage(buildScoreboardMessage());
+                    break;
+                    
+                case "GET_SCOREBOARD":
+                    // Com lease válido o placar local está atualizado: responder sem consultar o coordenador
+                    if (canServeLocalReads()) {
+                        sendMessage(buildScoreboardMessage());
+                    } else {
+                        sendMessage("ERROR|SCOREBOARD_UNAVAILABLE");
+                    }
+                    break;
+                    
                 case "ANSWER":
                     if (gameActive && !answered) {
                         lastAnswer = Integer.parseInt(parts[1]);
                         answered = true;
+                        long instant = answerInstant(parts, System.currentTimeMillis());
                         // Salvar resposta no estado da questão
                         if (currentQuestionState != null) {
-                            currentQuestionState.pendingAnswers.put(playerName, lastAnswer);
+                            currentQuestionState.recordAnswer(playerName, lastAnswer, instant);
+                        }
+                        // Seguidor: encaminhar ao coordenador no próximo lote
+                        if (!isCoordinator) {
+                            forwardAnswer(playerName, lastAnswer, instant);
                         }
                         log("Resposta de " + playerName + ": " + lastAnswer);
                     }
                     break;
+                    
+                case "CLOCK_PONG":
+                    double rtt = (System.nanoTime() - Long.parseLong(parts[1])) / 1e6;
+                    clock.sample(rtt, Long.parseLong(parts[2]), Long.parseLong(parts[3]));
+                    clientRtt.record(Math.round(rtt * 1_000_000));
+                    break;
+            }
+        }
+        
+        // Acima da marca d'água alta: REDIRECT para um par com folga (sem par elegível
+        // ou após MAX_REDIRECT_HOPS saltos, o jogador fica aqui)
+        private boolean redirectIfOverloaded(int hops) {
+            if (hops >= MAX_REDIRECT_HOPS || clients.size() < HIGH_WATER * CAPACITY) return false;
+            ServerInfo target = pickRedirectTarget();
+            if (target == null) return false;
+            
+            // Contabilizar já o jogador no par (até o próximo relatório de carga):
+            // redirecionamentos seguidos se espalham
+            target.pendingRedirects.incrementAndGet();
+            sendMessage("REDIRECT|" + target.address + "|" + target.clientPort + "|" + target.id);
+            if (redirectedJoins.incrementAndGet() % 100 == 1) {
+                log("Acima da marca d'água (" + clients.size() + "/" + CAPACITY + "): JOIN redirecionado a #" +
+                    target.id + " (" + redirectedJoins.get() + " no total)");
+            }
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Ignora erro ao fechar socket
+            }
+            return true;
+        }
+        
+        // Instante da resposta no relógio local: t do cliente corrigido pelo offset e
+        // limitado a [recebida - RTO, recebida]
+        private long answerInstant(String[] parts, long receivedAt) {
+            if (link != null) {
+                // Via relay: o instante já vem no relógio do relay, descontada a latência
+                // até o jogador; falta converter e descontar a ida até o relay. O piso
+                // (RTO do link mais um orçamento por salto da árvore) limita quanto um
+                // relay pode antecipar uma resposta
+                if (parts.length < 3 || !link.clock.ready()) return receivedAt;
+                int hops = 1;
+                for (int i = relayConnId.indexOf('/'); i >= 0; i = relayConnId.indexOf('/', i + 1)) {
+                    hops++;
+                }
+                long floor = receivedAt - link.clock.rto() - (long) RELAY_HOP_BUDGET * hops;
+                long corrected = Long.parseLong(parts[2]) - link.clock.offset();
+                return Math.max(floor, Math.min(receivedAt, corrected)) - Math.round(link.clock.srtt() / 2);
+            }
+            if (!clock.ready()) return receivedAt;
+            long oneWay = Math.round(clock.srtt() / 2);
+            long answeredAt = receivedAt - oneWay;
+            if (parts.length > 2) {
+                long corrected = Long.parseLong(parts[2]) - clock.offset();
+                answeredAt = Math.max(receivedAt - clock.rto(), Math.min(receivedAt, corrected));
+            }
+            return answeredAt - oneWay;
+        }
+        
+        // Retomada pelo token: sem varrer 'clients' e sem broadcast do placar;
+        // apenas esta conexão recebe o estado atual.
+        private void resume(String token) {
+            Session resumed = sessions.get(token);
+            if (resumed == null) {
+                sendMessage("RESUME_FAILED");
+                return;
+            }
+            
+            session = resumed;
+            playerName = resumed.playerName;
+            standby = false;
+            register();
+            
+            score = globalScoreboard.getOrDefault(playerName, 0);
+            QuestionState state = currentQuestionState;
+            Integer answer = state != null ? state.pendingAnswers.get(playerName) : null;
+            if (answer != null) {
+                markAnswered(answer);
+            }
+            
+            sendMessage("RESUMED|" + playerName + "|" + serverId + "|" + score);
+            sendRoomChannel(this);
+            if (gameActive && answer == null && currentQuestionIndex < questions.size()) {
+                Question q = questions.get(currentQuestionIndex);
+                sendMessage("QUESTION|" + q.question + "|" + String.join("|", q.options));
+            }
+            sendMessage(buildScoreboardMessage());
+            updatePlayerCount();
+            log("Sessão retomada: " + playerName + " (Score: " + score + ")");
+        }
+        
+        // Troca atômica no índice por nome: cada JOIN concorrente despeja exatamente o anterior
+        private void register() {
+            ClientHandler previous = clientsByName.put(playerName, this);
+            if (previous != null && previous != this) {
+                clients.remove(previous.clientId);
+                previous.close();
+                log("Conexão anterior de " + playerName + " foi fechada");
             }
+            clients.put(clientId, this);
         }
         
         public void sendMessage(String msg) {
-            if (out != null) out.println(msg);
+            if (link != null) {
+                link.sendMessage("TO|" + relayConnId + "|" + msg);
+            } else if (out != null) {
+                out.println(msg);
+            }
+        }
+        
+        private void close() {
+            if (link != null) {
+                // O relay fecha a conexão do jogador
+                link.relayed.remove(relayConnId, this);
+                link.sendMessage("DROP|" + relayConnId);
+                return;
+            }
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Ignora erro ao fechar socket
+            }
         }
         
         public String getPlayerName() { return playerName != null ? playerName : "Jogador"; }
@@ -1240,12 +3463,244 @@ public class DistributedQuizServer extends JFrame {
         public boolean hasAnswered() { return answered; }
         public int getLastAnswer() { return lastAnswer; }
         public void resetAnswer() { answered = false; lastAnswer = -1; }
+        public void markAnswered(int answer) { answered = true; lastAnswer = answer; }
     }
     
     // ==================== CLASSES AUXILIARES ====================
     
+    private static class GameSnapshot {
+        final long seq;
+        final long term; // mandato do coordenador que sequenciou o evento seq
+        final boolean gameActive;
+        final int questionIndex;
+        final Map<String, ScoreCounter> scoreboard;
+        final Map<String, String> sessions; // token -> jogador
+        
+        GameSnapshot(long seq, long term, boolean gameActive, int questionIndex,
+                     Map<String, ScoreCounter> scoreboard, Map<String, String> sessions) {
+            this.seq = seq;
+            this.term = term;
+            this.gameActive = gameActive;
+            this.questionIndex = questionIndex;
+            this.scoreboard = scoreboard;
+            this.sessions = sessions;
+        }
+        
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(seq);
+            out.writeLong(term);
+            out.writeBoolean(gameActive);
+            out.writeInt(questionIndex);
+            out.writeInt(scoreboard.size());
+            for (Map.Entry<String, ScoreCounter> entry : scoreboard.entrySet()) {
+                out.writeUTF(entry.getKey());
+                entry.getValue().writeTo(out);
+            }
+            out.writeInt(sessions.size());
+            for (Map.Entry<String, String> entry : sessions.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeUTF(entry.getValue());
+            }
+        }
+        
+        static GameSnapshot readFrom(DataInputStream in) throws IOException {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException("formato de snapshot desconhecido");
+            }
+            long seq = in.readLong();
+            long term = in.readLong();
+            boolean active = in.readBoolean();
+            int index = in.readInt();
+            int players = in.readInt();
+            Map<String, ScoreCounter> board = new HashMap<>(players * 2);
+            for (int i = 0; i < players; i++) {
+                board.put(in.readUTF(), ScoreCounter.readFrom(in));
+            }
+            int tokenCount = in.readInt();
+            Map<String, String> tokens = new HashMap<>(tokenCount * 2);
+            for (int i = 0; i < tokenCount; i++) {
+                tokens.put(in.readUTF(), in.readUTF());
+            }
+            return new GameSnapshot(seq, term, active, index, board, tokens);
+        }
+    }
+    
+    /** Blocos recebidos de uma transferência de estado ainda não concluída. */
+    private static class StateTransfer {
+        final long id;
+        final int rawLength;
+        final long crc;
+        final String[] chunks;
+        int received = 0;
+        
+        StateTransfer(long id, int rawLength, int chunkCount, long crc) {
+            this.id = id;
+            this.rawLength = rawLength;
+            this.crc = crc;
+            this.chunks = new String[chunkCount];
+        }
+        
+        void addChunk(int index, String data) {
+            if (index >= 0 && index < chunks.length && chunks[index] == null) {
+                chunks[index] = data;
+                received++;
+            }
+        }
+        
+        GameSnapshot decode() throws IOException {
+            if (received != chunks.length) {
+                throw new IOException("blocos faltando (" + received + "/" + chunks.length + ")");
+            }
+            
+            Base64.Decoder decoder = Base64.getDecoder();
+            Inflater inflater = new Inflater();
+            byte[] raw = new byte[rawLength];
+            int offset = 0;
+            try {
+                for (String chunk : chunks) {
+                    inflater.setInput(decoder.decode(chunk));
+                    while (!inflater.needsInput() && offset < rawLength) {
+                        offset += inflater.inflate(raw, offset, rawLength - offset);
+                    }
+                }
+            } catch (DataFormatException | IllegalArgumentException e) {
+                throw new IOException("dados corrompidos: " + e.getMessage());
+            } finally {
+                inflater.end();
+            }
+            
+            CRC32 check = new CRC32();
+            check.update(raw, 0, offset);
+            if (offset != rawLength || check.getValue() != crc) {
+                throw new IOException("checksum inválido");
+            }
+            return GameSnapshot.readFrom(new DataInputStream(new ByteArrayInputStream(raw)));
+        }
+    }
+    
+    /** Contador PN (CRDT) com uma entrada P/N por servidor. */
+    private static class ScoreCounter {
+        private final Map<Integer, int[]> entries = new HashMap<>(4);
+        
+        synchronized int add(int replicaId, int delta) {
+            int[] pn = entries.computeIfAbsent(replicaId, k -> new int[2]);
+            if (delta >= 0) {
+                pn[0] += delta;
+            } else {
+                pn[1] -= delta;
+            }
+            return value();
+        }
+        
+        synchronized void merge(int replicaId, int p, int n) {
+            int[] pn = entries.computeIfAbsent(replicaId, k -> new int[2]);
+            pn[0] = Math.max(pn[0], p);
+            pn[1] = Math.max(pn[1], n);
+        }
+        
+        void mergeAll(ScoreCounter other) {
+            for (Map.Entry<Integer, int[]> entry : other.snapshotEntries().entrySet()) {
+                merge(entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+            }
+        }
+        
+        synchronized int value() {
+            int total = 0;
+            for (int[] pn : entries.values()) {
+                total += pn[0] - pn[1];
+            }
+            return total;
+        }
+        
+        synchronized String encodeEntry(String playerName, int replicaId) {
+            int[] pn = entries.getOrDefault(replicaId, new int[2]);
+            return playerName + ":" + replicaId + ":" + pn[0] + ":" + pn[1];
+        }
+        
+        synchronized Map<Integer, int[]> snapshotEntries() {
+            Map<Integer, int[]> copy = new HashMap<>(entries.size() * 2);
+            for (Map.Entry<Integer, int[]> entry : entries.entrySet()) {
+                copy.put(entry.getKey(), entry.getValue().clone());
+            }
+            return copy;
+        }
+        
+        ScoreCounter copy() {
+            ScoreCounter copy = new ScoreCounter();
+            copy.entries.putAll(snapshotEntries());
+            return copy;
+        }
+        
+        synchronized void writeTo(DataOutputStream out) throws IOException {
+            out.writeInt(entries.size());
+            for (Map.Entry<Integer, int[]> entry : entries.entrySet()) {
+                out.writeInt(entry.getKey());
+                out.writeInt(entry.getValue()[0]);
+                out.writeInt(entry.getValue()[1]);
+            }
+        }
+        
+        static ScoreCounter readFrom(DataInputStream in) throws IOException {
+            ScoreCounter counter = new ScoreCounter();
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                counter.entries.put(in.readInt(), new int[]{in.readInt(), in.readInt()});
+            }
+            return counter;
+        }
+    }
+    
+    /** Sessão de um jogador (token replicado); a conexão atual fica em clientsByName. */
+    private static class Session {
+        final String token;
+        final String playerName;
+        
+        Session(String token, String playerName) {
+            this.token = token;
+            this.playerName = playerName;
+        }
+    }
+    
+    private static class WalEntry {
+        final long seq;
+        final long term; // mandato do coordenador que sequenciou o evento
+        final String action;
+        final String data;
+        
+        WalEntry(long seq, long term, String action, String data) {
+            this.seq = seq;
+            this.term = term;
+            this.action = action;
+            this.data = data;
+        }
+    }
+    
     private static class QuestionState {
+        final long revealedAt; // relógio local do servidor
         Map<String, Integer> pendingAnswers = new ConcurrentHashMap<>();
+        Map<String, Long> answerElapsed = new ConcurrentHashMap<>(); // ms desde a revelação
+        
+        QuestionState() {
+            this(System.currentTimeMillis());
+        }
+        
+        QuestionState(long revealedAt) {
+            this.revealedAt = revealedAt;
+        }
+        
+        // Primeira resposta do jogador vence; 'instant' já vem compensado pela latência.
+        void recordAnswer(String player, int answer, long instant) {
+            if (pendingAnswers.putIfAbsent(player, answer) == null) {
+                answerElapsed.put(player, Math.max(0, Math.min(QUESTION_DURATION, instant - revealedAt)));
+            }
+        }
+        
+        int speedPoints(String player) {
+            long elapsed = answerElapsed.getOrDefault(player, (long) QUESTION_DURATION);
+            return SPEED_BASE_POINTS + (int) (SPEED_BONUS_POINTS * (QUESTION_DURATION - elapsed) / QUESTION_DURATION);
+        }
     }
     
     private static class ServerInfo {
@@ -1253,7 +3708,19 @@ public class DistributedQuizServer extends JFrame {
         String address;
         int clientPort;
         int serverPort;
-        long lastSeen;
+        volatile long lastSeen;
+        // Carga informada no último heartbeat (ou piggyback SWIM)
+        volatile int players;
+        volatile int capacity;
+        volatile int outboundQueue;
+        volatile int cpuLoad;     // milésimos por núcleo, -1 = desconhecido
+        volatile int activeRooms;
+        volatile InetSocketAddress repairAddress; // destino dos NACKs (criado no 1º heartbeat)
+        final AtomicInteger pendingRedirects = new AtomicInteger(); // enviados desde o último relatório
+        
+        double utilization() {
+            return capacity > 0 ? (double) (players + pendingRedirects.get()) / capacity : Double.MAX_VALUE;
+        }
         
         ServerInfo(int id, String addr, int cPort, int sPort) {
             this.id = id;
@@ -1276,21 +3743,328 @@ public class DistributedQuizServer extends JFrame {
         }
     }
     
-    private static class MutexRequest implements Comparable<MutexRequest> {
-        int senderId;
-        int timestamp;
+    private enum ElectionState { IDLE, WAITING_OK, WAITING_COORDINATOR }
+    
+    /**
+     * Detector de falhas phi-accrual (Hayashibara et al.): aprende a distribuição
+     * dos intervalos entre heartbeats de um servidor e calcula o nível de suspeita
+     * phi = -log10(P(intervalo > tempo desde o último heartbeat)).
+     */
+    private static class PhiAccrualDetector {
+        private static final int WINDOW_SIZE = 100;
+        private static final int MIN_SAMPLES = 3;
+        private static final double MIN_STD_DEV = 50.0; // ms, evita phi explosivo em links muito estáveis
+        
+        private final long[] intervals = new long[WINDOW_SIZE];
+        private int count = 0;
+        private int next = 0;
+        private long sum = 0;
+        private long sumSquares = 0;
+        private long lastArrival = -1;
+        
+        synchronized void heartbeat(long now) {
+            if (lastArrival >= 0) {
+                long interval = now - lastArrival;
+                if (count == WINDOW_SIZE) {
+                    sum -= intervals[next];
+                    sumSquares -= intervals[next] * intervals[next];
+                } else {
+                    count++;
+                }
+                intervals[next] = interval;
+                sum += interval;
+                sumSquares += interval * interval;
+                next = (next + 1) % WINDOW_SIZE;
+            }
+            lastArrival = now;
+        }
         
-        MutexRequest(int id, int ts) {
-            this.senderId = id;
-            this.timestamp = ts;
+        synchronized boolean isReady() {
+            return count >= MIN_SAMPLES;
         }
         
-        @Override
-        public int compareTo(MutexRequest other) {
-            if (this.timestamp != other.timestamp) {
-                return this.timestamp - other.timestamp;
+        synchronized double phi(long now) {
+            if (count == 0) return 0.0;
+            double mean = (double) sum / count;
+            double variance = (double) sumSquares / count - mean * mean;
+            double stdDev = Math.max(Math.sqrt(Math.max(variance, 0)), MIN_STD_DEV);
+            
+            // Aproximação logística da CDF normal
+            double y = ((now - lastArrival) - mean) / stdDev;
+            double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+            double pLater = (now - lastArrival) > mean ? e / (1.0 + e) : 1.0 - 1.0 / (1.0 + e);
+            return -Math.log10(Math.max(pLater, 1e-300));
+        }
+    }
+    
+    /** Questão cifrada com AES-GCM e chave própria; PREFETCH leva o conteúdo, REVEAL a chave. */
+    private static class SealedQuestion {
+        private static final SecureRandom RANDOM = new SecureRandom();
+        
+        final int index;
+        final byte[] key;
+        final byte[] iv;
+        final byte[] ciphertext;
+        
+        private SealedQuestion(int index, byte[] key, byte[] iv, byte[] ciphertext) {
+            this.index = index;
+            this.key = key;
+            this.iv = iv;
+            this.ciphertext = ciphertext;
+        }
+        
+        static SealedQuestion seal(int index, String frame) throws GeneralSecurityException {
+            byte[] key = new byte[16];
+            byte[] iv = new byte[12];
+            RANDOM.nextBytes(key);
+            RANDOM.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new GCMParameterSpec(128, iv));
+            byte[] ciphertext = cipher.doFinal(frame.getBytes(StandardCharsets.UTF_8));
+            return new SealedQuestion(index, key, iv, ciphertext);
+        }
+        
+        String prefetchFrame() {
+            Base64.Encoder encoder = Base64.getEncoder();
+            return "PREFETCH|" + index + "|" + encoder.encodeToString(iv) + "|" + encoder.encodeToString(ciphertext);
+        }
+        
+        String revealFrame() {
+            return "REVEAL|" + index + "|" + Base64.getEncoder().encodeToString(key);
+        }
+    }
+    
+    /** Token bucket: taxa sustentada com rajada limitada (chamadas serializadas pelo dono). */
+    private static class TokenBucket {
+        private final double ratePerMs;
+        private final double capacity;
+        private double tokens;
+        private long lastRefill = System.nanoTime();
+        
+        TokenBucket(double ratePerSecond, int burst) {
+            this.ratePerMs = ratePerSecond / 1000.0;
+            this.capacity = burst;
+            this.tokens = burst;
+        }
+        
+        // Bloqueia até haver um token; retorna quanto esperou (ms).
+        long acquire() throws InterruptedException {
+            long waited = 0;
+            refill();
+            while (tokens < 1) {
+                long sleep = Math.max(1, (long) Math.ceil((1 - tokens) / ratePerMs));
+                Thread.sleep(sleep);
+                waited += sleep;
+                refill();
+            }
+            tokens -= 1;
+            return waited;
+        }
+        
+        boolean tryAcquire() {
+            refill();
+            if (tokens < 1) return false;
+            tokens -= 1;
+            return true;
+        }
+        
+        private void refill() {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastRefill) / 1e6 * ratePerMs);
+            lastRefill = now;
+        }
+    }
+    
+    /**
+     * Emissor multicast confiável: numera os quadros de um fluxo, limita a taxa de envio
+     * (token bucket) e guarda os últimos RM_BUFFER_SIZE quadros para responder NACKs.
+     */
+    private static class ReliableMulticastSender {
+        final int senderId;
+        final String stream;
+        final InetAddress group;
+        final int port;
+        private final TokenBucket window = new TokenBucket(RM_RATE, RM_WINDOW);
+        private final Map<Long, byte[]> retransmitBuffer = new LinkedHashMap<Long, byte[]>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+                return size() > RM_BUFFER_SIZE;
+            }
+        };
+        private final Map<Long, Long> lastRepair = new HashMap<>();
+        private final long epoch = System.currentTimeMillis(); // distingue reinícios do emissor
+        private long seq = 0;
+        
+        ReliableMulticastSender(int senderId, String stream, InetAddress group, int port) {
+            this.senderId = senderId;
+            this.stream = stream;
+            this.group = group;
+            this.port = port;
+        }
+        
+        // false se exceder maxSize; a espera pela janela fica fora do monitor
+        boolean send(DatagramSocket socket, String payload, int maxSize) throws IOException {
+            if (payload.length() > maxSize) return false; // nem o cabeçalho caberia
+            try {
+                synchronized (window) {
+                    window.acquire();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("envio multicast interrompido");
+            }
+            synchronized (this) {
+                byte[] data = ("RM|" + senderId + "|" + stream + "|" + epoch + "|" + (seq + 1) + "|" + payload)
+                    .getBytes(StandardCharsets.UTF_8);
+                if (data.length > maxSize) return false;
+                socket.send(new DatagramPacket(data, data.length, group, port));
+                seq++;
+                retransmitBuffer.put(seq, data);
+                return true;
+            }
+        }
+        
+        // Reparos saem da mesma janela de envio, sem esperar por ela: sem token, o
+        // restante fica para o próximo NACK do receptor
+        void retransmit(DatagramSocket socket, long from, long to, SocketAddress requester) {
+            List<byte[]> frames = new ArrayList<>();
+            long lostUpTo = -1;
+            synchronized (this) {
+                long now = System.currentTimeMillis();
+                lastRepair.keySet().removeIf(s -> !retransmitBuffer.containsKey(s));
+                long first = Math.max(from, seq - RM_BUFFER_SIZE);
+                long last = Math.min(Math.min(to, seq), first + RM_NACK_MAX_RANGE - 1);
+                for (long s = first; s <= last; s++) {
+                    byte[] data = retransmitBuffer.get(s);
+                    if (data == null) {
+                        lostUpTo = s;
+                        continue;
+                    }
+                    Long repairedAt = lastRepair.get(s);
+                    if (repairedAt != null && now - repairedAt < RM_REPAIR_HOLDOFF) continue; // já reparado há pouco
+                    frames.add(data);
+                    lastRepair.put(s, now);
+                }
+                if (from < seq - RM_BUFFER_SIZE) {
+                    lostUpTo = Math.max(lostUpTo, Math.min(to, seq - RM_BUFFER_SIZE));
+                }
+            }
+            try {
+                for (byte[] data : frames) {
+                    synchronized (window) {
+                        if (!window.tryAcquire()) break;
+                    }
+                    socket.send(new DatagramPacket(data, data.length, group, port));
+                }
+                if (lostUpTo >= 0) {
+                    byte[] lost = ("RM_LOST|" + senderId + "|" + stream + "|" + lostUpTo)
+                        .getBytes(StandardCharsets.UTF_8);
+                    socket.send(new DatagramPacket(lost, lost.length, requester));
+                }
+            } catch (IOException e) {
+                // O receptor volta a pedir após ReliableMulticastReceiver.NACK_RETRY
+            }
+        }
+        
+        synchronized long lastSeq() {
+            return seq;
+        }
+    }
+    
+    /** Visão SWIM de um membro do cluster. */
+    private static class SwimMember {
+        static final int ALIVE = 0;
+        static final int SUSPECT = 1;
+        static final int DEAD = 2;
+        
+        final int id;
+        String host;
+        int clientPort;
+        int serverPort;
+        long incarnation;
+        int state;
+        long stateSince;
+        
+        SwimMember(int id, String host, int clientPort, int serverPort, long incarnation, int state, long now) {
+            this.id = id;
+            this.host = host;
+            this.clientPort = clientPort;
+            this.serverPort = serverPort;
+            this.incarnation = incarnation;
+            this.state = state;
+            this.stateSince = now;
+        }
+        
+        void setState(int newState, long now) {
+            state = newState;
+            stateSince = now;
+        }
+        
+        // Precedência do SWIM: ALIVE só com encarnação maior; SUSPECT/DEAD vencem na mesma.
+        boolean overriddenBy(int newState, long newIncarnation) {
+            switch (newState) {
+                case ALIVE:
+                    return newIncarnation > incarnation;
+                case SUSPECT:
+                    return state == ALIVE ? newIncarnation >= incarnation : newIncarnation > incarnation;
+                default:
+                    return state != DEAD && newIncarnation >= incarnation;
             }
-            return this.senderId - other.senderId;
+        }
+        
+        InetSocketAddress address() {
+            return new InetSocketAddress(host, serverPort);
+        }
+        
+        String encode() {
+            return "ASD".charAt(state) + ":" + id + ":" + incarnation + ":" + clientPort + ":" + serverPort + ":" + host;
+        }
+    }
+    
+    private static class GossipUpdate {
+        final String text;
+        int remaining;
+        
+        GossipUpdate(String text, int remaining) {
+            this.text = text;
+            this.remaining = remaining;
+        }
+    }
+    
+    /** Sonda feita a pedido de outro membro (SWIM_PING_REQ). */
+    private static class RelayedProbe {
+        final InetSocketAddress requester;
+        final long seq;
+        final int targetId;
+        final long createdAt = System.currentTimeMillis();
+        
+        RelayedProbe(InetSocketAddress requester, long seq, int targetId) {
+            this.requester = requester;
+            this.seq = seq;
+            this.targetId = targetId;
+        }
+    }
+    
+    /** Estatísticas simples de latência (em ms). */
+    private static class LatencyStats {
+        private long count = 0;
+        private long totalNanos = 0;
+        private long maxNanos = 0;
+        
+        synchronized long record(long nanos) {
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+            return nanos / 1_000_000;
+        }
+        
+        synchronized long getCount() { return count; }
+        synchronized double getAverageMillis() { return count == 0 ? 0 : totalNanos / 1e6 / count; }
+        synchronized double getMaxMillis() { return maxNanos / 1e6; }
+        
+        @Override
+        public synchronized String toString() {
+            return String.format("n=%d, média=%.1f ms, máx=%.1f ms", count, getAverageMillis(), getMaxMillis());
         }
     }
     
@@ -1301,14 +4075,32 @@ public class DistributedQuizServer extends JFrame {
             String status = isCoordinator ? " (EU)" : "";
             coordLabel.setText("Coordenador: Servidor #" + coordinatorId + status);
             coordLabel.setForeground(isCoordinator ? new Color(0, 150, 0) : Color.BLACK);
+            handoffButton.setEnabled(isCoordinator && !activeServers.isEmpty());
         });
     }
     
+    // Comparação em tempo constante com o segredo dos relays (vazio = relays desativados).
+    private static boolean relaySecretMatches(String secret) {
+        if (RELAY_SECRET.isEmpty()) return false;
+        return MessageDigest.isEqual(
+            RELAY_SECRET.getBytes(StandardCharsets.UTF_8),
+            secret.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    // Jogadores no cluster: os locais mais os anunciados no último heartbeat de cada par.
+    private int clusterPlayerCount() {
+        int total = clients.size();
+        for (ServerInfo info : activeServers.values()) {
+            total += info.players;
+        }
+        return total;
+    }
+    
     private void updatePlayerCount() {
         SwingUtilities.invokeLater(() -> {
-            playersLabel.setText("Jogadores: " + clients.size());
+            playersLabel.setText("Jogadores: " + clients.size() + " (cluster: " + clusterPlayerCount() + ")");
             if (isCoordinator) {
-                startGameButton.setEnabled(clients.size() > 0 && !gameActive);
+                startGameButton.setEnabled(clusterPlayerCount() > 0 && !gameActive);
             }
         });
     }
@@ -1316,12 +4108,14 @@ public class DistributedQuizServer extends JFrame {
     private void updateServerCount() {
         SwingUtilities.invokeLater(() -> {
             serversLabel.setText("Servidores Ativos: " + (activeServers.size() + 1));
+            handoffButton.setEnabled(isCoordinator && !activeServers.isEmpty());
         });
     }
     
     private void log(String message) {
+        // Carimbo HLC: logs de servidores diferentes se intercalam respeitando a causalidade
+        String timestamp = formatHlc(currentClock());
         SwingUtilities.invokeLater(() -> {
-            String timestamp = new java.text.SimpleDateFormat("HH:mm:ss").format(new Date());
             logArea.append("[" + timestamp + "] " + message + "\n");
             logArea.setCaretPosition(logArea.getDocument().getLength());
         });
@@ -1334,6 +4128,12 @@ public class DistributedQuizServer extends JFrame {
         running = false;
         if (heartbeatTimer != null) heartbeatTimer.cancel();
         if (failureDetectionTimer != null) failureDetectionTimer.cancel();
+        if (swimTimer != null) swimTimer.cancel();
+        if (swimSocket != null) swimSocket.close();
+        if (snapshotTimer != null) snapshotTimer.cancel();
+        electionTimer.cancel();
+        broadcastTimer.cancel();
+        writeSnapshot();
         
         try {
             if (multicastSocket != null) {
@@ -1352,9 +4152,213 @@ public class DistributedQuizServer extends JFrame {
         }
     }
     
+    // ==================== BENCHMARKS E VERIFICAÇÕES ====================
+    
+    // Mede o tempo de sincronização de estado em função do tamanho do placar.
+    private static void runSyncBenchmark() throws IOException {
+        System.out.println(String.format("%10s %12s %12s %10s %8s %14s %12s %12s",
+            "jogadores", "bytes(old)", "legado(ms)", "bytes", "blocos", "codificar(ms)", "aplicar(ms)", "total(ms)"));
+        
+        for (int players : new int[]{100, 1000, 10000, 100000}) {
+            Map<String, ScoreCounter> board = new HashMap<>();
+            Random random = new Random(42);
+            for (int i = 0; i < players; i++) {
+                ScoreCounter counter = new ScoreCounter();
+                counter.add(1 + random.nextInt(3), random.nextInt(50) * 100);
+                board.put("Jogador" + i, counter);
+            }
+            GameSnapshot snapshot = new GameSnapshot(players, 0, true, 2, board, new HashMap<>());
+            
+            // Aquecimento do JIT
+            for (int i = 0; i < 3; i++) {
+                decodeFrames(encodeStateTransfer(snapshot, i, 0, 0));
+            }
+            
+            // Caminho legado: STATE_SYNC + uma linha SCORE_SYNC por jogador, com flush por linha
+            List<String> legacy = new ArrayList<>(players + 1);
+            legacy.add("STATE_SYNC|true|2|0");
+            for (Map.Entry<String, ScoreCounter> entry : board.entrySet()) {
+                legacy.add("SCORE_SYNC|" + entry.getKey() + "|" + entry.getValue().value());
+            }
+            long legacyBytes = 0;
+            for (String line : legacy) legacyBytes += line.length() + 1;
+            Map<String, Integer> legacyApplied = new HashMap<>();
+            double legacyMs = measureTcpSync(legacy, true, lines -> {
+                for (String line : lines) {
+                    String[] parts = line.split("\\|");
+                    if (parts[0].equals("SCORE_SYNC")) {
+                        legacyApplied.put(parts[1], Integer.parseInt(parts[2]));
+                    }
+                }
+            });
+            if (legacyApplied.size() != players) {
+                throw new IllegalStateException("placar legado incompleto");
+            }
+            
+            long t0 = System.nanoTime();
+            List<String> frames = encodeStateTransfer(snapshot, 1, 0, 0);
+            long t1 = System.nanoTime();
+            GameSnapshot decoded = decodeFrames(frames);
+            long t2 = System.nanoTime();
+            
+            for (Map.Entry<String, ScoreCounter> entry : board.entrySet()) {
+                if (decoded.scoreboard.get(entry.getKey()).value() != entry.getValue().value()) {
+                    throw new IllegalStateException("placar decodificado difere do original");
+                }
+            }
+            
+            // Comparável ao legado: codificar, enviar pelo mesmo TCP local com um único flush
+            // (sendMessages) e decodificar no receptor
+            long t3 = System.nanoTime();
+            List<String> sent = encodeStateTransfer(snapshot, 2, 0, 0);
+            double encodeMs = (System.nanoTime() - t3) / 1e6;
+            double transferMs = measureTcpSync(sent, false, lines -> {
+                try {
+                    decodeFrames(lines);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            double totalMs = encodeMs + transferMs;
+            
+            long bytes = 0;
+            for (String frame : frames) bytes += frame.length() + 1;
+            System.out.println(String.format("%10d %12d %12.2f %10d %8d %14.2f %12.2f %12.2f",
+                players, legacyBytes, legacyMs, bytes, frames.size() - 2,
+                (t1 - t0) / 1e6, (t2 - t1) / 1e6, totalMs));
+        }
+    }
+    
+    // Envia as linhas por TCP local e mede até o receptor aplicá-las: com flush por linha
+    // (sendStateSyncTo original) ou com um único flush (sendMessages)
+    private static double measureTcpSync(List<String> lines, boolean flushEachLine,
+                                         Consumer<List<String>> apply) throws IOException {
+        try (ServerSocket listener = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+             Socket sender = new Socket(InetAddress.getLoopbackAddress(), listener.getLocalPort());
+             Socket receiver = listener.accept()) {
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(sender.getOutputStream(), "UTF-8"));
+            BufferedReader in = new BufferedReader(new InputStreamReader(receiver.getInputStream(), "UTF-8"));
+            List<String> received = new ArrayList<>(lines.size());
+            
+            long start = System.nanoTime();
+            Thread writer = new Thread(() -> {
+                if (flushEachLine) {
+                    for (String line : lines) {
+                        out.println(line);
+                        out.flush();
+                    }
+                } else {
+                    writeLines(out, lines);
+                }
+            });
+            writer.start();
+            for (int i = 0; i < lines.size(); i++) {
+                received.add(in.readLine());
+            }
+            apply.accept(received);
+            long elapsed = System.nanoTime() - start;
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return elapsed / 1e6;
+        }
+    }
+    
+    // Réplicas do CRDT com trocas fora de ordem, duplicadas e perdidas devem convergir
+    private static boolean runCrdtConvergenceCheck() {
+        final int replicas = 5;
+        final int rounds = 20;
+        Random random = new Random(7);
+        String[] players = {"Ana", "Bruno", "Carla", "Davi:1", "Eva"};
+        
+        List<Map<String, ScoreCounter>> states = new ArrayList<>();
+        for (int r = 0; r < replicas; r++) {
+            states.add(new HashMap<>());
+        }
+        Map<String, Integer> expected = new HashMap<>();
+        
+        for (int round = 0; round < rounds; round++) {
+            // Incrementos (e alguns decrementos) locais em réplicas aleatórias
+            List<String> messages = new ArrayList<>();
+            for (int op = 0; op < 50; op++) {
+                int replica = random.nextInt(replicas);
+                String player = players[random.nextInt(players.length)];
+                int delta = random.nextInt(10) == 0 ? -50 : 100;
+                ScoreCounter counter = states.get(replica).computeIfAbsent(player, k -> new ScoreCounter());
+                counter.add(replica, delta);
+                expected.merge(player, delta, Integer::sum);
+                messages.add(replica + "|" + counter.encodeEntry(player, replica));
+            }
+            
+            // Entrega fora de ordem, com duplicatas e perdas
+            Collections.shuffle(messages, random);
+            for (String message : messages) {
+                int copies = random.nextInt(4) == 0 ? 0 : 1 + random.nextInt(2);
+                int origin = Integer.parseInt(message.substring(0, message.indexOf('|')));
+                String data = message.substring(message.indexOf('|') + 1);
+                for (int c = 0; c < copies; c++) {
+                    int target = random.nextInt(replicas);
+                    if (target != origin) {
+                        mergeScoreEntry(states.get(target), data);
+                    }
+                }
+            }
+        }
+        
+        // Anti-entropy final: cada réplica envia seu estado completo às demais
+        for (int from = 0; from < replicas; from++) {
+            for (int to = 0; to < replicas; to++) {
+                if (from == to) continue;
+                mergeScoreboard(states.get(to), states.get(from));
+            }
+        }
+        
+        boolean converged = true;
+        for (int r = 0; r < replicas; r++) {
+            for (String player : players) {
+                ScoreCounter counter = states.get(r).get(player);
+                int value = counter == null ? 0 : counter.value();
+                int want = expected.getOrDefault(player, 0);
+                if (value != want) {
+                    System.out.println("Réplica " + r + ": " + player + " = " + value + " (esperado " + want + ")");
+                    converged = false;
+                }
+            }
+        }
+        System.out.println(converged
+            ? "CRDT convergiu: " + replicas + " réplicas, " + expected
+            : "CRDT NÃO convergiu");
+        return converged;
+    }
+    
+    private static GameSnapshot decodeFrames(List<String> frames) throws IOException {
+        String[] begin = frames.get(0).split("\\|");
+        StateTransfer transfer = new StateTransfer(Long.parseLong(begin[1]),
+            Integer.parseInt(begin[2]), Integer.parseInt(begin[4]), Long.parseLong(begin[5]));
+        for (int i = 1; i < frames.size() - 1; i++) {
+            String[] parts = frames.get(i).split("\\|");
+            transfer.addChunk(Integer.parseInt(parts[2]), parts[3]);
+        }
+        return transfer.decode();
+    }
+    
     // ==================== MAIN ====================
     
     public static void main(String[] args) {
+        if (args != null && args.length > 0 && args[0].equals("--bench-sync")) {
+            try {
+                runSyncBenchmark();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return;
+        }
+        if (args != null && args.length > 0 && args[0].equals("--check-crdt")) {
+            System.exit(runCrdtConvergenceCheck() ? 0 : 1);
+        }
+        
         SwingUtilities.invokeLater(() -> {
             String config = null;
             
@@ -0,0 +1,118 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Receptor de um fluxo multicast confiável (RM|emissor|fluxo|época|seq|payload),
+ * compartilhado por servidores e clientes:
+ * - Entrega em ordem, descartando duplicatas
+ * - Detecta lacunas, inclusive pelo último seq anunciado no heartbeat
+ * - Indica quando (re)enviar o NACK da primeira faixa em falta
+ * - Mede perdas e o tempo até cada lacuna ser reparada
+ */
+class ReliableMulticastReceiver {
+    static final int NACK_RETRY = 100;     // intervalo mínimo entre NACKs da mesma lacuna
+    static final int REORDER_LIMIT = 256;  // quadros fora de ordem aguardando a lacuna
+
+    private long epoch = -1;
+    private long expected = -1;   // próximo seq a entregar (-1 = ainda não sincronizado)
+    private long highestSeen = -1;
+    private final TreeMap<Long, String> reorder = new TreeMap<>();
+    private long gapSince = 0;
+    private long lastNack = 0;
+    private long repairMillis = -1;
+    private long lost = 0;
+
+    synchronized List<String> receive(long seq, String payload) {
+        List<String> delivered = new ArrayList<>();
+        if (expected == -1) {
+            expected = seq;
+            highestSeen = seq - 1;
+        }
+        if (seq < expected || reorder.containsKey(seq)) return delivered; // duplicado
+
+        noteSeen(seq);
+        if (seq > expected) {
+            reorder.put(seq, payload);
+            if (reorder.size() > REORDER_LIMIT) {
+                return skipTo(reorder.firstKey() - 1); // lacuna antiga demais: desistir dela
+            }
+            return delivered;
+        }
+        delivered.add(payload);
+        expected++;
+        drain(delivered);
+        return delivered;
+    }
+
+    synchronized boolean matchesEpoch(long senderEpoch) {
+        if (epoch == -1) epoch = senderEpoch;
+        return epoch == senderEpoch;
+    }
+
+    // Último seq enviado pelo emissor (heartbeat): revela perdas no fim do fluxo.
+    synchronized void observeLatest(long latest) {
+        if (expected == -1) {
+            expected = latest + 1;
+            highestSeen = latest;
+            return;
+        }
+        if (latest > highestSeen) {
+            lost += latest - highestSeen;
+            if (gapSince == 0) gapSince = System.currentTimeMillis();
+            highestSeen = latest;
+        }
+    }
+
+    // Quadros até upTo não podem mais ser reparados.
+    synchronized List<String> skipTo(long upTo) {
+        List<String> delivered = new ArrayList<>();
+        if (upTo >= expected) {
+            expected = upTo + 1;
+            reorder.headMap(expected).clear();
+            highestSeen = Math.max(highestSeen, upTo);
+        }
+        gapSince = 0; // perda definitiva, não conta como reparo
+        drain(delivered);
+        if (highestSeen >= expected) gapSince = System.currentTimeMillis();
+        return delivered;
+    }
+
+    // Primeira faixa contígua em falta, se já for hora de (re)enviar o NACK.
+    synchronized long[] nackDue(long now) {
+        if (expected == -1 || highestSeen < expected || now - lastNack < NACK_RETRY) return null;
+        lastNack = now;
+        long to = reorder.isEmpty() ? highestSeen : reorder.firstKey() - 1;
+        return new long[]{expected, to};
+    }
+
+    // Duração da última lacuna fechada (ms), ou -1.
+    synchronized long takeRepairMillis() {
+        long result = repairMillis;
+        repairMillis = -1;
+        return result;
+    }
+
+    synchronized long lostCount() {
+        return lost;
+    }
+
+    private void noteSeen(long seq) {
+        if (seq > highestSeen + 1) {
+            lost += seq - highestSeen - 1;
+            if (gapSince == 0) gapSince = System.currentTimeMillis();
+        }
+        highestSeen = Math.max(highestSeen, seq);
+    }
+
+    private void drain(List<String> delivered) {
+        while (reorder.containsKey(expected)) {
+            delivered.add(reorder.remove(expected));
+            expected++;
+        }
+        if (expected > highestSeen && gapSince != 0) {
+            repairMillis = System.currentTimeMillis() - gapSince;
+            gapSince = 0;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * Estimador de RTT no estilo do TCP (RFC 6298): srtt, rttvar e RTO, em ms.
+ * Compartilhado por servidores e relays.
+ */
+class RttEstimator {
+    static final long MIN_RTO = 50;
+    static final long MAX_RTO = 2000;
+    static final long INITIAL_RTO = 500;
+
+    private double srtt = -1;
+    private double rttvar = 0;
+
+    synchronized void sample(double rttMillis) {
+        if (srtt < 0) {
+            srtt = rttMillis;
+            rttvar = rttMillis / 2;
+        } else {
+            rttvar = 0.75 * rttvar + 0.25 * Math.abs(srtt - rttMillis);
+            srtt = 0.875 * srtt + 0.125 * rttMillis;
+        }
+    }
+
+    synchronized double srtt() {
+        return srtt;
+    }
+
+    synchronized long rto() {
+        if (srtt < 0) return INITIAL_RTO;
+        return Math.max(MIN_RTO, Math.min(MAX_RTO, (long) Math.ceil(srtt + 4 * rttvar)));
+    }
+}
@@ -5,7 +5,7 @@ echo   2 Servidores + 2 Clientes
 echo ======================================
 echo.
 
-javac -encoding UTF-8 DistributedQuizServer.java DistributedQuizClient.java 2>nul
+javac -encoding UTF-8 DistributedQuizServer.java DistributedQuizClient.java DistributedQuizRelay.java ReliableMulticastReceiver.java RttEstimator.java ClockOffsetEstimator.java 2>nul
 if errorlevel 1 (
     echo Erro na compilacao!
     pause
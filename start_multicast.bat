@@ -12,7 +12,7 @@ echo.
 
 REM Compilar arquivos Java
 echo [32mCompilando arquivos Java com UTF-8...[0m
-javac -encoding UTF-8 DistributedQuizServer.java DistributedQuizClient.java
+javac -encoding UTF-8 DistributedQuizServer.java DistributedQuizClient.java DistributedQuizRelay.java ReliableMulticastReceiver.java RttEstimator.java ClockOffsetEstimator.java
 
 if errorlevel 1 (
     echo [31mErro na compilacao![0m
@@ -100,8 +100,8 @@ echo =========================================
 echo.
 echo [36mNOVOS RECURSOS:[0m
 echo   [32m✓[0m Descoberta automatica via Multicast (230.0.0.1:4446)
-echo   [32m✓[0m Heartbeat a cada 2 segundos
-echo   [32m✓[0m Deteccao de falhas (timeout 6 segundos)
+echo   [32m✓[0m Heartbeat a cada 500 ms
+echo   [32m✓[0m Deteccao de falhas adaptativa (phi-accrual)
 echo   [32m✓[0m Eleicao automatica de coordenador
 echo   [32m✓[0m Reconexao automatica de clientes
 echo   [32m✓[0m Sincronizacao de estado entre servidores